@@ -0,0 +1,75 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Each encoding forced through {@code zip(String, int)}, and the decoding of its
+ * output, to a String or appended to a builder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @State(Scope.Thread)
+    public static class Encoded {
+
+        @Param({ "1", "2", "3", "4", "6" })
+        public int type;
+
+        byte[][] zipped;
+        StringBuilder builder = new StringBuilder();
+
+        @Setup
+        public void setup(Inputs in) {
+            zipped = new byte[in.strings.length][];
+            for (int i = 0; i < zipped.length; i++) {
+                zipped[i] = LitheStringAlgorithm.zip(in.strings[i], type);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] zip(Inputs in, Encoded enc) {
+        return LitheStringAlgorithm.zip(in.strings[in.next()], enc.type);
+    }
+
+    @Benchmark
+    public byte[] zipUTF8(Inputs in, Encoded enc) {
+        return LitheStringAlgorithm.zipUTF8(in.utf8[in.next()], enc.type);
+    }
+
+    @Benchmark
+    public String unzip(Inputs in, Encoded enc) {
+        return LitheStringAlgorithm.unzip(enc.zipped[in.next()]);
+    }
+
+    @Benchmark
+    public int unzipAppend(Inputs in, Encoded enc) {
+        enc.builder.setLength(0);
+        enc.builder.append(LitheStringAlgorithm.unzip(enc.zipped[in.next()]));
+        return enc.builder.length();
+    }
+
+    @Benchmark
+    public int unzipToBuilder(Inputs in, Encoded enc) {
+        enc.builder.setLength(0);
+        return LitheStringAlgorithm.unzipTo(enc.zipped[in.next()], enc.builder);
+    }
+}
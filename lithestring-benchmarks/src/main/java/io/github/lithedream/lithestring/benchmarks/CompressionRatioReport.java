@@ -0,0 +1,51 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Prints the compression ratio (compressed bytes / UTF-8 bytes) of the automatic
+ * selection and of every forced encoding, for each corpus and size bracket, on the
+ * same samples used by the JMH benchmarks.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar io.github.lithedream.lithestring.benchmarks.CompressionRatioReport
+ * </pre>
+ */
+public class CompressionRatioReport {
+
+    private static final int[] TYPES = { 1, 2, 3, 4, 6 };
+
+    public static void main(String[] args) {
+        StringBuilder header = new StringBuilder(String.format(Locale.ROOT, "%-18s %-6s %10s %8s", "corpus",
+                "size", "utf8 bytes", "zip"));
+        for (int type : TYPES) {
+            header.append(String.format(Locale.ROOT, " %8s", "type" + type));
+        }
+        System.out.println(header);
+
+        for (Corpus corpus : Corpus.values()) {
+            for (SizeBracket bracket : SizeBracket.values()) {
+                String[] samples = corpus.samples(bracket, Inputs.SAMPLES, Inputs.SEED);
+                long utf8 = 0;
+                long auto = 0;
+                long[] forced = new long[TYPES.length];
+                for (String s : samples) {
+                    utf8 += s.getBytes(StandardCharsets.UTF_8).length;
+                    auto += LitheStringAlgorithm.zip(s).length;
+                    for (int t = 0; t < TYPES.length; t++) {
+                        forced[t] += LitheStringAlgorithm.zip(s, TYPES[t]).length;
+                    }
+                }
+                StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-18s %-6s %10d %8.3f", corpus,
+                        bracket, utf8, (double) auto / utf8));
+                for (long f : forced) {
+                    row.append(String.format(Locale.ROOT, " %8.3f", (double) f / utf8));
+                }
+                System.out.println(row);
+            }
+        }
+    }
+}
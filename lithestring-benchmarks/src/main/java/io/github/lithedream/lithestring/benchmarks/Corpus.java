@@ -0,0 +1,203 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic generators of benchmark inputs, one per kind of text.
+ */
+public enum Corpus {
+
+    /** Java-like identifiers and dotted paths, e.g. {@code order.lineItem.unitPrice}. */
+    ASCII_IDENTIFIERS {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            if (sb.length() > 0) {
+                sb.append(rnd.nextInt(4) == 0 ? ' ' : '.');
+            }
+            int words = 1 + rnd.nextInt(3);
+            boolean snake = rnd.nextInt(5) == 0;
+            for (int i = 0; i < words; i++) {
+                String w = pick(rnd, WORDS);
+                if (i > 0 && snake) {
+                    sb.append('_').append(w);
+                } else if (i > 0) {
+                    sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+                } else {
+                    sb.append(w);
+                }
+            }
+            if (rnd.nextInt(6) == 0) {
+                sb.append(rnd.nextInt(100));
+            }
+        }
+    },
+
+    /** English-like sentences with capitalization and punctuation. */
+    PROSE {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            int words = 4 + rnd.nextInt(10);
+            for (int i = 0; i < words; i++) {
+                String w = pick(rnd, WORDS);
+                if (i == 0 || rnd.nextInt(12) == 0) {
+                    sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+                } else {
+                    sb.append(w);
+                }
+                if (i < words - 1) {
+                    sb.append(rnd.nextInt(9) == 0 ? ", " : " ");
+                }
+            }
+            sb.append(rnd.nextInt(5) == 0 ? '?' : '.');
+        }
+    },
+
+    /** Chinese text made of common characters and full-width punctuation. */
+    CJK {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            int chars = 4 + rnd.nextInt(12);
+            for (int i = 0; i < chars; i++) {
+                sb.append(HANZI.charAt(rnd.nextInt(HANZI.length())));
+            }
+            sb.append(rnd.nextInt(3) == 0 ? '。' : '，');
+        }
+    },
+
+    /** Short chat-like messages mixing ASCII words and supplementary-plane emoji. */
+    EMOJI {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            if (rnd.nextInt(3) == 0) {
+                int n = 1 + rnd.nextInt(3);
+                for (int i = 0; i < n; i++) {
+                    sb.appendCodePoint(0x1F600 + rnd.nextInt(80));
+                }
+            } else {
+                sb.append(pick(rnd, WORDS));
+            }
+        }
+    },
+
+    /** Small JSON records as found in caches and message payloads. */
+    JSON {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            sb.append(sb.length() == 0 ? "{" : ",");
+            String key = pick(rnd, WORDS);
+            sb.append('"').append(key).append(rnd.nextInt(20)).append("\":");
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    sb.append(rnd.nextInt(100000));
+                    break;
+                case 1:
+                    sb.append(rnd.nextBoolean());
+                    break;
+                case 2:
+                    sb.append('"').append(pick(rnd, WORDS)).append(' ').append(pick(rnd, WORDS)).append('"');
+                    break;
+                default:
+                    sb.append("[\"").append(pick(rnd, WORDS)).append("\",\"").append(pick(rnd, WORDS))
+                            .append("\"]");
+                    break;
+            }
+        }
+
+        @Override
+        String finish(StringBuilder sb) {
+            return sb.append('}').toString();
+        }
+    },
+
+    /** Random code points from Latin, Greek, Cyrillic, CJK and emoji blocks. */
+    RANDOM {
+        @Override
+        void appendToken(Random rnd, StringBuilder sb) {
+            switch (rnd.nextInt(5)) {
+                case 0:
+                    sb.appendCodePoint(0x20 + rnd.nextInt(0x5F));
+                    break;
+                case 1:
+                    sb.appendCodePoint(0xA0 + rnd.nextInt(0x2D0));
+                    break;
+                case 2:
+                    sb.appendCodePoint(0x370 + rnd.nextInt(0x190));
+                    break;
+                case 3:
+                    sb.appendCodePoint(0x4E00 + rnd.nextInt(0x5200));
+                    break;
+                default:
+                    sb.appendCodePoint(0x1F300 + rnd.nextInt(0x300));
+                    break;
+            }
+        }
+    };
+
+    private static final String[] WORDS = { "the", "of", "and", "to", "in", "is", "that", "for", "it", "as",
+            "with", "was", "on", "be", "at", "by", "this", "had", "not", "are", "but", "from", "or", "have",
+            "user", "account", "order", "item", "price", "total", "name", "value", "status", "created",
+            "updated", "service", "request", "response", "cache", "index", "string", "record", "customer",
+            "address", "country", "city", "session", "token", "message", "payload", "id", "type", "count",
+            "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "river", "window", "garden", "morning" };
+
+    private static final String HANZI = "的一是不了人我在有他"
+            + "这中大来上国个到说们为子和你地"
+            + "出道也时年得就那要下以生会自着"
+            + "去之过家学对可她里后小么心多天"
+            + "而能好都然没日于起还发成事只作"
+            + "当想看文无开手十用主行方又如前"
+            + "所本见经头面公同三已老从动两长";
+
+    abstract void appendToken(Random rnd, StringBuilder sb);
+
+    String finish(StringBuilder sb) {
+        return sb.toString();
+    }
+
+    /**
+     * Generates {@code count} distinct samples whose UTF-8 length falls inside
+     * {@code bracket}. The same seed always yields the same samples.
+     *
+     * @param bracket the size bracket
+     * @param count   number of samples
+     * @param seed    random seed
+     * @return the samples
+     */
+    public String[] samples(SizeBracket bracket, int count, long seed) {
+        Random rnd = new Random(seed ^ ordinal() * 0x9E3779B97F4A7C15L ^ bracket.ordinal());
+        String[] samples = new String[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = sample(rnd, bracket);
+        }
+        return samples;
+    }
+
+    private String sample(Random rnd, SizeBracket bracket) {
+        int target = bracket.target() - bracket.target() / 4 + rnd.nextInt(bracket.target() / 4 + 1);
+        StringBuilder sb = new StringBuilder();
+        while (utf8Length(finish(new StringBuilder(sb))) < target) {
+            appendToken(rnd, sb);
+        }
+        String s = finish(sb);
+        while (!bracket.contains(utf8Length(s)) && s.length() > 1) {
+            int end = s.offsetByCodePoints(s.length(), -1);
+            s = s.substring(0, end);
+        }
+        return s;
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String pick(Random rnd, String[] values) {
+        return values[rnd.nextInt(values.length)];
+    }
+}
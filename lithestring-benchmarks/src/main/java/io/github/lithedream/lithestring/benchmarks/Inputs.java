@@ -0,0 +1,57 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.github.lithedream.lithestring.LitheString;
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * A rotating pool of samples for one corpus and size bracket, so that the JIT
+ * cannot specialize on a single constant input.
+ */
+@State(Scope.Thread)
+public class Inputs {
+
+    static final int SAMPLES = 256;
+    static final long SEED = 20240601L;
+
+    @Param({ "ASCII_IDENTIFIERS", "PROSE", "CJK", "EMOJI", "JSON", "RANDOM" })
+    public Corpus corpus;
+
+    @Param({ "TINY", "SMALL", "LARGE" })
+    public SizeBracket bracket;
+
+    String[] strings;
+    byte[][] utf8;
+    byte[][] zipped;
+    LitheString[] litheStrings;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        strings = corpus.samples(bracket, SAMPLES, SEED);
+        utf8 = new byte[SAMPLES][];
+        zipped = new byte[SAMPLES][];
+        litheStrings = new LitheString[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            utf8[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            zipped[i] = LitheStringAlgorithm.zip(strings[i]);
+            litheStrings[i] = LitheString.fromBytes(zipped[i]);
+        }
+    }
+
+    /**
+     * @return the index of the next sample to use
+     */
+    int next() {
+        int i = cursor;
+        cursor = (i + 1) & (SAMPLES - 1);
+        return i;
+    }
+}
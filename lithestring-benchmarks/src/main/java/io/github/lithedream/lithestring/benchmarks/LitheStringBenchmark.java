@@ -0,0 +1,34 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.lithedream.lithestring.LitheString;
+
+/**
+ * The value object API: {@code LitheString.of} and {@code getString}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LitheStringBenchmark {
+
+    @Benchmark
+    public LitheString of(Inputs in) {
+        return LitheString.of(in.strings[in.next()]);
+    }
+
+    @Benchmark
+    public String getString(Inputs in) {
+        return in.litheStrings[in.next()].getString();
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+/**
+ * The input size brackets used by {@code LitheStringAlgorithm.zipUTF8} to decide
+ * which encodings compete (UTF-8 byte length).
+ */
+public enum SizeBracket {
+
+    /** Up to 64 bytes: raw, type1, type2 and type6 compete. */
+    TINY(40, 1, 64),
+
+    /** Up to 512 bytes: raw, type1, type2, type6 and type4 compete. */
+    SMALL(300, 65, 512),
+
+    /** Over 512 bytes: raw and type4 compete. */
+    LARGE(4096, 513, Integer.MAX_VALUE);
+
+    private final int target;
+    private final int min;
+    private final int max;
+
+    SizeBracket(int target, int min, int max) {
+        this.target = target;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return the UTF-8 length generated samples aim for
+     */
+    public int target() {
+        return target;
+    }
+
+    /**
+     * @param utf8Length a UTF-8 length
+     * @return if the length falls inside this bracket
+     */
+    public boolean contains(int utf8Length) {
+        return utf8Length >= min && utf8Length <= max;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.lithedream.lithestring.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Best-encoding selection ({@code zip}/{@code zipUTF8}) and automatic decoding
+ * ({@code unzip}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipBenchmark {
+
+    @Benchmark
+    public byte[] zip(Inputs in) {
+        return LitheStringAlgorithm.zip(in.strings[in.next()]);
+    }
+
+    @Benchmark
+    public byte[] zipUTF8(Inputs in) {
+        return LitheStringAlgorithm.zipUTF8(in.utf8[in.next()]);
+    }
+
+    @Benchmark
+    public String unzip(Inputs in) {
+        return LitheStringAlgorithm.unzip(in.zipped[in.next()]);
+    }
+}
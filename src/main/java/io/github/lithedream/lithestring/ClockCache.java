@@ -0,0 +1,257 @@
+package io.github.lithedream.lithestring;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LitheStringCache#bounded(long)}: lock-striped segments, each a hash map
+ * plus a CLOCK ring, with TinyLFU admission.
+ */
+final class ClockCache implements LitheStringCache {
+
+    // object headers, the String and its array, the map entry and the node
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ClockCache(long maxBytes) {
+        int count = Integer.highestOneBit(Math.max(4, Math.min(64, Runtime.getRuntime().availableProcessors() * 4)));
+        // small budgets get fewer segments, so that a string fits in one
+        while (count > 1 && maxBytes / count < 64 * 1024) {
+            count >>>= 1;
+        }
+        this.segments = new Segment[count];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxBytes / count);
+        }
+    }
+
+    static long weigh(LitheString key, String value) {
+        byte[] bytes = key.internalBytes();
+        return ENTRY_OVERHEAD + 2L * value.length() + (bytes != null ? bytes.length : 0);
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private Segment segment(int hash) {
+        return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    @Override
+    public String get(LitheString key) {
+        int hash = spread(key.hashCode());
+        String value = segment(hash).get(key, hash);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(LitheString key, String value) {
+        int hash = spread(key.hashCode());
+        segment(hash).put(key, value, hash);
+    }
+
+    @Override
+    public Stats stats() {
+        long size = 0;
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+                weight += segment.weight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static final class Node {
+        final LitheString key;
+        String value;
+        long weight;
+        // recent uses, 0 to 3: the hand passes a used node, decrementing it
+        int uses;
+        Node previous;
+        Node next;
+
+        Node(LitheString key, String value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final class Segment {
+        final HashMap<LitheString, Node> map = new HashMap<>();
+        final FrequencySketch sketch;
+        final long maxWeight;
+        long weight;
+        // the ring of nodes; the hand is the next candidate for eviction
+        Node hand;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxWeight / 256)));
+        }
+
+        synchronized String get(LitheString key, int hash) {
+            sketch.increment(hash);
+            Node node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (node.uses < 3) {
+                node.uses++;
+            }
+            return node.value;
+        }
+
+        synchronized void put(LitheString key, String value, int hash) {
+            long nodeWeight = weigh(key, value);
+            if (nodeWeight > maxWeight) {
+                return;
+            }
+            Node node = map.get(key);
+            if (node != null) {
+                weight += nodeWeight - node.weight;
+                node.value = value;
+                node.weight = nodeWeight;
+            } else {
+                if (weight + nodeWeight > maxWeight && hand != null) {
+                    // admission: the candidate must be more frequent than the
+                    // victim
+                    Node victim = advance();
+                    if (sketch.frequency(hash) <= sketch.frequency(spread(victim.key.hashCode()))) {
+                        return;
+                    }
+                }
+                node = new Node(key, value, nodeWeight);
+                map.put(key, node);
+                link(node);
+                weight += nodeWeight;
+            }
+            while (weight > maxWeight) {
+                Node victim = advance();
+                if (victim == node) {
+                    // the new node is the only one left that can go; it was
+                    // admitted, so it stays over those already evicted
+                    break;
+                }
+                remove(victim);
+                evictions.increment();
+            }
+        }
+
+        // moves the hand to a node with no recent use, and returns it
+        private Node advance() {
+            while (hand.uses > 0) {
+                hand.uses--;
+                hand = hand.next;
+            }
+            return hand;
+        }
+
+        // a new node goes just behind the hand, the last to be visited
+        private void link(Node node) {
+            if (hand == null) {
+                node.previous = node;
+                node.next = node;
+                hand = node;
+                return;
+            }
+            node.next = hand;
+            node.previous = hand.previous;
+            hand.previous.next = node;
+            hand.previous = node;
+        }
+
+        private void remove(Node node) {
+            map.remove(node.key);
+            weight -= node.weight;
+            if (node.next == node) {
+                hand = null;
+                return;
+            }
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            if (hand == node) {
+                hand = node.next;
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            hand = null;
+            weight = 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, halved periodically so that old
+     * lookups fade
+     */
+    static final class FrequencySketch {
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int counters) {
+            int length = Integer.highestOneBit(Math.max(16, counters) - 1) << 1;
+            this.table = new long[length / 16];
+            this.mask = table.length - 1;
+            this.sampleSize = 10 * length;
+        }
+
+        private static int rehash(int hash, int i) {
+            int h = hash * (0x27d4eb2f + 2 * i) + i;
+            return h ^ (h >>> 15);
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                int h = rehash(hash, i);
+                int shift = (h >>> 28) << 2;
+                frequency = Math.min(frequency, (int) ((table[h & mask] >>> shift) & 15));
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int h = rehash(hash, i);
+                int shift = (h >>> 28) << 2;
+                int index = h & mask;
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package io.github.lithedream.lithestring;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
 
@@ -11,8 +17,9 @@ import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
  *
  * <p>
  * The compression algorithm chooses the smallest output among:
- * raw UTF-8, a 5-bit Latin alphabet encoding, a Huffman-based encoding,
- * and GZIP with a small header. Decoding is automatic and based on a header.
+ * raw UTF-8, a 5-bit Latin alphabet encoding, a Huffman-based encoding, a
+ * built-in Huffman table for English text, and raw DEFLATE with a small
+ * header. Decoding is automatic and based on a header.
  * </p>
  *
  * <p>
@@ -43,7 +50,9 @@ public final class LitheString implements Serializable {
     private final boolean cacheEnabled;
     private transient SoftReference<String> cached;
 
-    private LitheString(byte[] compressed, boolean immutable, boolean cacheEnabled) {
+    private static volatile LitheStringCache decodeCache;
+
+    LitheString(byte[] compressed, boolean immutable, boolean cacheEnabled) {
         this.compressed = compressed;
         this.immutable = immutable;
         this.cacheEnabled = cacheEnabled;
@@ -126,12 +135,29 @@ public final class LitheString implements Serializable {
         return compressed;
     }
 
+    // the internal array, never copied
+    byte[] internalBytes() {
+        return compressed;
+    }
+
     /**
-     * Returns the original string by decoding the stored bytes.
+     * Returns the original string by decoding the stored bytes. With
+     * {@code cacheEnabled}, the string comes from the cache installed by
+     * {@link #setDecodeCache(LitheStringCache)}, or else from a soft reference
+     * held by this instance.
      *
      * @return decoded string
      */
     public String getString() {
+        LitheStringCache cache = decodeCache;
+        if (cacheEnabled && cache != null && compressed != null) {
+            String value = cache.get(this);
+            if (value == null) {
+                value = LitheStringAlgorithm.unzip(compressed);
+                cache.put(this, value);
+            }
+            return value;
+        }
         if (cacheEnabled) {
             String value = cached == null ? null : cached.get();
             if (value != null) {
@@ -145,6 +171,132 @@ public final class LitheString implements Serializable {
         return decoded;
     }
 
+    /**
+     * Returns a view of the string that decodes only as much as needed:
+     * {@code charAt(i)} and {@code subSequence} stop after the chars asked for,
+     * resuming from checkpoints recorded along the way. {@code length()} walks
+     * the whole string once, unless it was compressed with
+     * {@link #zipWithLength(String)}. Each call returns a new view, not safe for
+     * concurrent use.
+     *
+     * @return the view, or null if this instance holds null
+     */
+    public CharSequence asCharSequence() {
+        return compressed != null ? LitheStringAlgorithm.asCharSequence(compressed, 0, compressed.length) : null;
+    }
+
+    /**
+     * Length of the string, read in O(1) if it was compressed with
+     * {@link #zipWithLength(String)}, otherwise found by decoding without
+     * building the String
+     *
+     * @return {@code getString().length()}
+     * @throws NullPointerException if this instance holds null
+     */
+    public int length() {
+        return LitheStringAlgorithm.decodedLength(compressed, 0, compressed.length);
+    }
+
+    /**
+     * Length of the UTF-8 bytes of the string, read in O(1) if it was compressed
+     * with {@link #zipWithLength(String)}, otherwise found by decoding
+     *
+     * @return the number of UTF-8 bytes of the string
+     * @throws NullPointerException if this instance holds null
+     */
+    public int utf8Length() {
+        return LitheStringAlgorithm.decodedUTF8Length(compressed, 0, compressed.length);
+    }
+
+    /**
+     * Tests the start of the string, decoding only as far as the prefix
+     *
+     * @param prefix not null
+     * @return {@code getString().startsWith(prefix)}, false if this instance
+     *         holds null
+     */
+    public boolean startsWith(String prefix) {
+        return compressed != null && LitheStringAlgorithm.startsWith(compressed, 0, compressed.length, prefix);
+    }
+
+    /**
+     * Tests the end of the string, without building it
+     *
+     * @param suffix not null
+     * @return {@code getString().endsWith(suffix)}, false if this instance
+     *         holds null
+     */
+    public boolean endsWith(String suffix) {
+        return compressed != null && LitheStringAlgorithm.endsWith(compressed, 0, compressed.length, suffix);
+    }
+
+    /**
+     * Searches the string, decoding only until the first match
+     *
+     * @param s not null
+     * @return {@code getString().indexOf(s)}, -1 if this instance holds null
+     */
+    public int indexOf(String s) {
+        return compressed != null ? LitheStringAlgorithm.indexOf(compressed, 0, compressed.length, s) : -1;
+    }
+
+    /**
+     * Searches the string, decoding only until the first match
+     *
+     * @param s not null
+     * @return {@code getString().contains(s)}, false if this instance holds
+     *         null
+     */
+    public boolean contains(String s) {
+        return compressed != null && LitheStringAlgorithm.contains(compressed, 0, compressed.length, s);
+    }
+
+    /**
+     * Char of the string, decoding only the block holding it if it was
+     * compressed with {@link #zipWithBlocks(String)}
+     *
+     * @param index index of the char
+     * @return {@code getString().charAt(index)}
+     * @throws NullPointerException      if this instance holds null
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public char charAt(int index) {
+        return LitheStringAlgorithm.charAt(compressed, 0, compressed.length, index);
+    }
+
+    /**
+     * Part of the string, decoding only the blocks holding it if it was
+     * compressed with {@link #zipWithBlocks(String)}
+     *
+     * @param from first char, inclusive
+     * @param to   last char, exclusive
+     * @return {@code getString().substring(from, to)}
+     * @throws NullPointerException      if this instance holds null
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public String substring(int from, int to) {
+        return LitheStringAlgorithm.substring(compressed, 0, compressed.length, from, to);
+    }
+
+    /**
+     * Installs a cache of decoded strings shared by all the instances created
+     * with {@code cacheEnabled}, in place of their own soft references. The
+     * cache holds its keys strongly: their bytes must not change.
+     *
+     * @param cache the cache, or null to go back to soft references
+     */
+    public static void setDecodeCache(LitheStringCache cache) {
+        decodeCache = cache;
+    }
+
+    /**
+     * @return the cache installed by {@link #setDecodeCache(LitheStringCache)},
+     *         or null
+     */
+    public static LitheStringCache getDecodeCache() {
+        return decodeCache;
+    }
+
     /**
      * Compresses a string and returns the encoded bytes.
      * The output is never larger than the UTF-8 bytes of the input.
@@ -156,8 +308,313 @@ public final class LitheString implements Serializable {
         return LitheStringAlgorithm.zip(input);
     }
 
+    /**
+     * Compresses a string like {@link #zip(String)}, behind a 3 to 11 byte
+     * header holding its UTF-8 and UTF-16 lengths, so that {@link #length()},
+     * {@link #utf8Length()}, {@link #length(byte[])} and
+     * {@link #utf8Length(byte[])} need no decoding.
+     *
+     * @param input the input string
+     * @return compressed bytes
+     */
+    public static byte[] zipWithLength(String input) {
+        return LitheStringAlgorithm.zipWithLength(input);
+    }
+
+    /**
+     * Length of the string compressed in the bytes, read in O(1) if they were
+     * produced by {@link #zipWithLength(String)}
+     *
+     * @param content compressed bytes, not null
+     * @return {@code unzip(content).length()}
+     */
+    public static int length(byte[] content) {
+        return LitheStringAlgorithm.decodedLength(content, 0, content.length);
+    }
+
+    /**
+     * Length of the UTF-8 bytes of the string compressed in the bytes, read in
+     * O(1) if they were produced by {@link #zipWithLength(String)}
+     *
+     * @param content compressed bytes, not null
+     * @return {@code unzipUTF8(content).length}
+     */
+    public static int utf8Length(byte[] content) {
+        return LitheStringAlgorithm.decodedUTF8Length(content, 0, content.length);
+    }
+
+    /**
+     * Compresses the string in independent blocks of 32 KB of UTF-8, behind an
+     * index of their offsets, for long strings read in parts:
+     * {@link #charAt(byte[], int)} and {@link #substring(byte[], int, int)}
+     * decode only the blocks they touch, {@link #unzip(byte[], Executor)}
+     * decodes them in parallel. The lengths are read from the index.
+     *
+     * @param input the input string
+     * @return compressed bytes
+     */
+    public static byte[] zipWithBlocks(String input) {
+        return LitheStringAlgorithm.zipWithBlocks(input);
+    }
+
+    /**
+     * Like {@link #zipWithBlocks(String)}, with blocks of the given size
+     *
+     * @param input     the input string
+     * @param blockSize UTF-8 bytes per block, from 1 KB to 16 MB
+     * @return compressed bytes
+     * @throws IllegalArgumentException if blockSize is out of range
+     */
+    public static byte[] zipWithBlocks(String input, int blockSize) {
+        return LitheStringAlgorithm.zipWithBlocks(input, blockSize);
+    }
+
+    /**
+     * Char of the string compressed in the bytes, decoding only the block
+     * holding it if they were produced by {@link #zipWithBlocks(String)}
+     *
+     * @param content compressed bytes, not null
+     * @param index   index of the char
+     * @return {@code unzip(content).charAt(index)}
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public static char charAt(byte[] content, int index) {
+        return LitheStringAlgorithm.charAt(content, 0, content.length, index);
+    }
+
+    /**
+     * Part of the string compressed in the bytes, decoding only the blocks
+     * holding it if they were produced by {@link #zipWithBlocks(String)}
+     *
+     * @param content compressed bytes, not null
+     * @param from    first char, inclusive
+     * @param to      last char, exclusive
+     * @return {@code unzip(content).substring(from, to)}
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public static String substring(byte[] content, int from, int to) {
+        return LitheStringAlgorithm.substring(content, 0, content.length, from, to);
+    }
+
+    /**
+     * Registers a preset dictionary under an id, for
+     * {@link #zipWithDictionary(String, int)}. The compressed bytes record the
+     * id: the same dictionary must be registered under the same id wherever
+     * they are decoded.
+     *
+     * @param id         dictionary id, from 0 to 255
+     * @param dictionary content likely to appear in the strings; only the last
+     *                   32 KB are used
+     * @throws IllegalArgumentException if the id is out of range, the
+     *                                  dictionary is empty, or the id is
+     *                                  already registered with other content
+     */
+    public static void registerDictionary(int id, byte[] dictionary) {
+        LitheStringAlgorithm.registerDictionary(id, dictionary);
+    }
+
+    /**
+     * Compresses a string, also trying deflate primed with a registered
+     * dictionary.
+     * The output is never larger than the UTF-8 bytes of the input.
+     *
+     * @param input        the input string
+     * @param dictionaryId id of a registered dictionary
+     * @return compressed bytes
+     * @throws IllegalArgumentException if the dictionary is not registered
+     */
+    public static byte[] zipWithDictionary(String input, int dictionaryId) {
+        return LitheStringAlgorithm.zipWithDictionary(input, dictionaryId);
+    }
+
+    /**
+     * Registers a static Huffman table under an id, built from the byte
+     * frequencies of typical UTF-8 input, for
+     * {@link #zipWithHuffmanTable(String, int)}. The compressed bytes record the
+     * id: the same table must be registered under the same id wherever they are
+     * decoded.
+     *
+     * @param id          table id, from 0 to 255
+     * @param frequencies 256 non-negative frequencies, one per byte value;
+     *                    bytes with frequency 0 are escaped
+     * @throws IllegalArgumentException if the id is out of range or already
+     *                                  registered with another table, or the
+     *                                  frequencies are not valid
+     */
+    public static void registerHuffmanTable(int id, int[] frequencies) {
+        LitheStringAlgorithm.registerHuffmanTable(id, frequencies);
+    }
+
+    /**
+     * Compresses a string, also trying a registered static Huffman table, which
+     * stores no per-string code table.
+     * The output is never larger than the UTF-8 bytes of the input.
+     *
+     * @param input   the input string
+     * @param tableId id of a registered table
+     * @return compressed bytes
+     * @throws IllegalArgumentException if the table is not registered
+     */
+    public static byte[] zipWithHuffmanTable(String input, int tableId) {
+        return LitheStringAlgorithm.zipWithHuffmanTable(input, tableId);
+    }
+
+    /**
+     * Compresses every string like {@link #zip(String)}, in parallel on the
+     * common {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param inputs the input strings; null elements give null
+     * @return compressed bytes, in the same order
+     */
+    public static byte[][] zipAll(String[] inputs) {
+        return LitheStringAlgorithm.zipAll(inputs);
+    }
+
+    /**
+     * Compresses every string like {@link #zip(String)}, in parallel, with
+     * workers run on the given executor and on the calling thread.
+     *
+     * @param inputs   the input strings; null elements give null
+     * @param executor runs the workers
+     * @return compressed bytes, in the same order
+     */
+    public static byte[][] zipAll(String[] inputs, Executor executor) {
+        return LitheStringAlgorithm.zipAll(inputs, executor);
+    }
+
+    /**
+     * List version of {@link #zipAll(String[])}.
+     *
+     * @param inputs the input strings; null elements give null
+     * @return compressed bytes, in the same order
+     */
+    public static List<byte[]> zipAll(List<String> inputs) {
+        return Arrays.asList(zipAll(inputs.toArray(new String[0])));
+    }
+
+    /**
+     * List version of {@link #zipAll(String[], Executor)}.
+     *
+     * @param inputs   the input strings; null elements give null
+     * @param executor runs the workers
+     * @return compressed bytes, in the same order
+     */
+    public static List<byte[]> zipAll(List<String> inputs, Executor executor) {
+        return Arrays.asList(zipAll(inputs.toArray(new String[0]), executor));
+    }
+
+    /**
+     * Stream version of {@link #zipAll(String[])}: lazy, and parallel if the
+     * stream is.
+     *
+     * @param inputs the input strings; null elements give null
+     * @return compressed bytes, in the same order
+     */
+    public static Stream<byte[]> zipAll(Stream<String> inputs) {
+        return inputs.map(new Function<String, byte[]>() {
+            @Override
+            public byte[] apply(String input) {
+                return zip(input);
+            }
+        });
+    }
+
+    /**
+     * Decompresses every byte array like {@link #unzip(byte[])}, in parallel
+     * on the common {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @return decoded strings, in the same order
+     */
+    public static String[] unzipAll(byte[][] contents) {
+        return LitheStringAlgorithm.unzipAll(contents);
+    }
+
+    /**
+     * Decompresses every byte array like {@link #unzip(byte[])}, in parallel,
+     * with workers run on the given executor and on the calling thread.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @param executor runs the workers
+     * @return decoded strings, in the same order
+     */
+    public static String[] unzipAll(byte[][] contents, Executor executor) {
+        return LitheStringAlgorithm.unzipAll(contents, executor);
+    }
+
+    /**
+     * List version of {@link #unzipAll(byte[][])}.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @return decoded strings, in the same order
+     */
+    public static List<String> unzipAll(List<byte[]> contents) {
+        return Arrays.asList(unzipAll(contents.toArray(new byte[0][])));
+    }
+
+    /**
+     * List version of {@link #unzipAll(byte[][], Executor)}.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @param executor runs the workers
+     * @return decoded strings, in the same order
+     */
+    public static List<String> unzipAll(List<byte[]> contents, Executor executor) {
+        return Arrays.asList(unzipAll(contents.toArray(new byte[0][]), executor));
+    }
+
+    /**
+     * Stream version of {@link #unzipAll(byte[][])}: lazy, and parallel if the
+     * stream is.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @return decoded strings, in the same order
+     */
+    public static Stream<String> unzipAll(Stream<byte[]> contents) {
+        return contents.map(new Function<byte[], String>() {
+            @Override
+            public String apply(byte[] content) {
+                return unzip(content);
+            }
+        });
+    }
+
+    /**
+     * Compresses the text like {@link #zip(String)}, into a heap, direct or
+     * mapped buffer. The text is encoded to UTF-8 once, into a temporary
+     * array, then compressed like {@link #zipUTF8(ByteBuffer, ByteBuffer)}.
+     *
+     * @param input the input text, not null
+     * @param dst   destination; its position is advanced past the compressed
+     *              bytes
+     * @return the number of compressed bytes
+     * @throws java.nio.BufferOverflowException if they do not fit, leaving dst
+     *                                          unchanged
+     */
+    public static int zip(CharSequence input, ByteBuffer dst) {
+        return LitheStringAlgorithm.zip(input, dst);
+    }
+
+    /**
+     * Compresses the UTF-8 bytes remaining in src, like {@link #zip(String)},
+     * into dst. Above 512 bytes neither buffer is copied whole: heap buffers
+     * are read and written in place, direct ones in chunks through pooled
+     * scratch memory. Smaller input is copied to a temporary array.
+     *
+     * @param src UTF-8 input; its position is advanced to its limit
+     * @param dst destination; its position is advanced past the compressed bytes
+     * @return the number of compressed bytes
+     * @throws java.nio.BufferOverflowException if they do not fit, leaving both
+     *                                          buffers unchanged
+     */
+    public static int zipUTF8(ByteBuffer src, ByteBuffer dst) {
+        return LitheStringAlgorithm.zipUTF8(src, dst);
+    }
+
     /**
      * Decompresses the given bytes back into a string.
+     * Bytes compressed with a dictionary or a Huffman table need it registered
+     * under the same id.
      *
      * @param content compressed bytes produced by {@link #zip(String)}
      * @return decoded string
@@ -166,6 +623,87 @@ public final class LitheString implements Serializable {
         return LitheStringAlgorithm.unzip(content);
     }
 
+    /**
+     * Like {@link #unzip(byte[])}, decoding the blocks of
+     * {@link #zipWithBlocks(String)} bytes in parallel, on the calling thread
+     * and on workers run by the executor.
+     *
+     * @param content  compressed bytes produced by {@link #zip(String)}
+     * @param executor runs the workers
+     * @return decoded string
+     */
+    public static String unzip(byte[] content, Executor executor) {
+        return LitheStringAlgorithm.unzip(content, executor);
+    }
+
+    /**
+     * Decompresses the given bytes into the UTF-8 bytes of the original string,
+     * skipping the decoding to a String.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}
+     * @return a new array with the UTF-8 bytes, or null if content is null
+     */
+    public static byte[] unzipUTF8(byte[] content) {
+        return LitheStringAlgorithm.unzipUTF8(content);
+    }
+
+    /**
+     * Decompresses the bytes remaining in src, a whole compressed value, into
+     * the UTF-8 bytes of the original string in dst: a heap, direct or mapped
+     * buffer, e.g. one going straight to a socket. Heap buffers are read in
+     * place, and so is what {@code zip} writes above 512 bytes from direct
+     * buffers; other content is copied from direct buffers first.
+     *
+     * @param src compressed bytes; its position is advanced to its limit
+     * @param dst destination; its position is advanced past the UTF-8 bytes
+     * @return the number of UTF-8 bytes
+     * @throws java.nio.BufferOverflowException if they do not fit, leaving both
+     *                                          buffers unchanged
+     */
+    public static int unzipTo(ByteBuffer src, ByteBuffer dst) {
+        return LitheStringAlgorithm.unzipTo(src, dst);
+    }
+
+    /**
+     * Decompresses the given bytes and appends the string to the builder,
+     * without building the String.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the builder
+     * @return the number of chars appended
+     */
+    public static int unzipTo(byte[] content, StringBuilder dst) {
+        return LitheStringAlgorithm.unzipTo(content, dst);
+    }
+
+    /**
+     * Decompresses the given bytes and appends the string to dst, in bulk from
+     * pooled scratch chars, without building the String. A CharSequence passed
+     * to {@code dst.append} is only valid during the call.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the destination
+     * @return the number of chars appended
+     * @throws IOException if dst throws it
+     */
+    public static int unzipTo(byte[] content, Appendable dst) throws IOException {
+        return LitheStringAlgorithm.unzipTo(content, dst);
+    }
+
+    /**
+     * Decompresses the given bytes into the chars of the string, written to dst
+     * from offset.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the destination
+     * @param offset  where to write the first char
+     * @return the number of chars written
+     * @throws IndexOutOfBoundsException if the chars do not fit
+     */
+    public static int unzipTo(byte[] content, char[] dst, int offset) {
+        return LitheStringAlgorithm.unzipTo(content, dst, offset);
+    }
+
     /**
      * Compresses a string and validates round-trip decoding.
      * Throws an exception if the decoded string differs.
@@ -0,0 +1,373 @@
+package io.github.lithedream.lithestring;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Stores many compressed strings in a few large segments, heap or direct, and
+ * refers to them by {@code long} handles instead of objects.
+ *
+ * <p>
+ * An entry costs its compressed bytes plus a varint of their length, usually 1
+ * byte; the garbage collector only sees the segments. A handle is the segment
+ * index in the high 32 bits and the offset of the entry in the low 32 bits.
+ * {@link #NULL} stands for a null string.
+ * </p>
+ *
+ * <p>
+ * Entries cannot be removed one by one: {@link #compact(long[])} copies the
+ * live ones into new segments and gives their new handles, and
+ * {@link #clear()} drops everything. Old handles are not valid afterwards and
+ * are not always detected.
+ * </p>
+ *
+ * <p>
+ * Adds are serialized; reads take no lock and can run concurrently with adds,
+ * as long as a handle reaches other threads through a safe publication.
+ * Entries in heap segments are decoded in place, entries in direct segments
+ * are copied out first.
+ * </p>
+ *
+ * <pre>{@code
+ * LitheStringArena arena = LitheStringArena.direct();
+ * long handle = arena.add("hello world");
+ * String text = arena.unzip(handle);
+ * }</pre>
+ */
+public final class LitheStringArena {
+
+    /**
+     * Handle of a null string
+     */
+    public static final long NULL = -1L;
+
+    /**
+     * Default segment size: 1 MB
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private final boolean direct;
+    private final int segmentSize;
+
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    // write position in the last segment
+    private int position;
+    private long size;
+    private long used;
+
+    private LitheStringArena(boolean direct, int segmentSize) {
+        if (segmentSize < 16) {
+            throw new IllegalArgumentException("Segment size " + segmentSize + " not valid. Minimum is 16");
+        }
+        this.direct = direct;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @return an arena of heap segments of {@link #DEFAULT_SEGMENT_SIZE}
+     */
+    public static LitheStringArena heap() {
+        return new LitheStringArena(false, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize size of a segment in bytes; larger entries get a
+     *                    segment of their own
+     * @return an arena of heap segments
+     */
+    public static LitheStringArena heap(int segmentSize) {
+        return new LitheStringArena(false, segmentSize);
+    }
+
+    /**
+     * @return an arena of direct (off-heap) segments of
+     *         {@link #DEFAULT_SEGMENT_SIZE}
+     */
+    public static LitheStringArena direct() {
+        return new LitheStringArena(true, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize size of a segment in bytes; larger entries get a
+     *                    segment of their own
+     * @return an arena of direct (off-heap) segments
+     */
+    public static LitheStringArena direct(int segmentSize) {
+        return new LitheStringArena(true, segmentSize);
+    }
+
+    /**
+     * Compresses the string with {@link LitheString#zip(String)} and stores it
+     *
+     * @param input the string
+     * @return its handle, or {@link #NULL} if input is null
+     */
+    public long add(String input) {
+        return input != null ? addCompressed(LitheStringAlgorithm.zip(input)) : NULL;
+    }
+
+    /**
+     * Stores already compressed bytes, e.g. from {@link LitheString#getBytes()}
+     *
+     * @param compressed compressed bytes
+     * @return their handle, or {@link #NULL} if compressed is null
+     */
+    public long addCompressed(byte[] compressed) {
+        if (compressed == null) {
+            return NULL;
+        }
+        return append(compressed, 0, compressed.length);
+    }
+
+    private synchronized long append(byte[] bytes, int offset, int length) {
+        int entryLength = varintLength(length) + length;
+        ByteBuffer[] segs = segments;
+        if (segs.length == 0 || segs[segs.length - 1].capacity() - position < entryLength) {
+            int capacity = Math.max(segmentSize, entryLength);
+            ByteBuffer segment = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            segs = Arrays.copyOf(segs, segs.length + 1);
+            segs[segs.length - 1] = segment;
+            position = 0;
+        }
+        int index = segs.length - 1;
+        ByteBuffer segment = segs[index];
+        long handle = (long) index << 32 | position;
+        int p = position;
+        for (int value = length; ; value >>>= 7) {
+            if ((value & ~0x7F) == 0) {
+                segment.put(p++, (byte) value);
+                break;
+            }
+            segment.put(p++, (byte) (value | 0x80));
+        }
+        if (segment.hasArray()) {
+            System.arraycopy(bytes, offset, segment.array(), p, length);
+        } else {
+            ByteBuffer target = segment.duplicate();
+            target.position(p);
+            target.put(bytes, offset, length);
+        }
+        position = p + length;
+        size++;
+        used += entryLength;
+        // publishes the new segment and, to readers of it, the entry
+        segments = segs;
+        return handle;
+    }
+
+    /**
+     * @param handle
+     * @return a copy of the compressed bytes, or null for {@link #NULL}
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public byte[] get(long handle) {
+        if (handle == NULL) {
+            return null;
+        }
+        ByteBuffer segment = segment(handle);
+        int offset = (int) handle;
+        int length = readLength(segment, offset);
+        int start = offset + varintLength(length);
+        if (segment.hasArray()) {
+            return Arrays.copyOfRange(segment.array(), start, start + length);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = segment.duplicate();
+        source.position(start);
+        source.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @param handle
+     * @return the number of compressed bytes of the entry, 0 for {@link #NULL}
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public int compressedLength(long handle) {
+        return handle == NULL ? 0 : readLength(segment(handle), (int) handle);
+    }
+
+    /**
+     * @param handle
+     * @return the string, or null for {@link #NULL}
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public String unzip(long handle) {
+        if (handle == NULL) {
+            return null;
+        }
+        ByteBuffer segment = segment(handle);
+        if (segment.hasArray()) {
+            int offset = (int) handle;
+            int length = readLength(segment, offset);
+            return LitheStringAlgorithm.unzip(segment.array(), offset + varintLength(length), length);
+        }
+        return LitheStringAlgorithm.unzip(get(handle));
+    }
+
+    /**
+     * Appends the string to the builder, without building the String
+     *
+     * @param handle not {@link #NULL}
+     * @param dst    the builder
+     * @return the number of chars appended
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public int unzipTo(long handle, StringBuilder dst) {
+        ByteBuffer segment = segment(handle);
+        if (segment.hasArray()) {
+            int offset = (int) handle;
+            int length = readLength(segment, offset);
+            return LitheStringAlgorithm.unzipTo(segment.array(), offset + varintLength(length), length, dst);
+        }
+        return LitheStringAlgorithm.unzipTo(get(handle), dst);
+    }
+
+    /**
+     * Compares the string of an entry with another, without building the
+     * String of the entry
+     *
+     * @param handle
+     * @param s
+     * @return true if the entry holds s, or is {@link #NULL} and s is null
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public boolean equals(long handle, String s) {
+        if (handle == NULL || s == null) {
+            return handle == NULL && s == null;
+        }
+        ByteBuffer segment = segment(handle);
+        if (segment.hasArray()) {
+            int offset = (int) handle;
+            int length = readLength(segment, offset);
+            return LitheStringAlgorithm.contentEquals(segment.array(), offset + varintLength(length), length, s);
+        }
+        byte[] content = get(handle);
+        return LitheStringAlgorithm.contentEquals(content, 0, content.length, s);
+    }
+
+    /**
+     * Copies the entries of the given handles into new segments and drops all
+     * the others, with the old segments. Handles repeated in the input are
+     * copied once.
+     *
+     * @param handles the live handles; {@link #NULL} is allowed
+     * @return the new handles, in the same order
+     * @throws IllegalArgumentException if a handle is not valid
+     */
+    public synchronized long[] compact(long[] handles) {
+        ByteBuffer[] old = segments;
+        long[] sorted = handles.clone();
+        Arrays.sort(sorted);
+        segments = new ByteBuffer[0];
+        position = 0;
+        size = 0;
+        used = 0;
+        // entries are copied in address order, so they keep their locality
+        long[] moved = new long[sorted.length];
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            long handle = sorted[i];
+            if (handle == NULL || (i > 0 && handle == sorted[i - 1])) {
+                continue;
+            }
+            ByteBuffer segment = segment(old, handle);
+            int offset = (int) handle;
+            int length = readLength(segment, offset);
+            int start = offset + varintLength(length);
+            byte[] bytes;
+            int from;
+            if (segment.hasArray()) {
+                bytes = segment.array();
+                from = start;
+            } else {
+                bytes = new byte[length];
+                from = 0;
+                ByteBuffer source = segment.duplicate();
+                source.position(start);
+                source.get(bytes);
+            }
+            sorted[distinct] = handle;
+            moved[distinct++] = append(bytes, from, length);
+        }
+        long[] result = new long[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            result[i] = handles[i] == NULL ? NULL : moved[Arrays.binarySearch(sorted, 0, distinct, handles[i])];
+        }
+        return result;
+    }
+
+    /**
+     * Drops all the entries and the segments
+     */
+    public synchronized void clear() {
+        segments = new ByteBuffer[0];
+        position = 0;
+        size = 0;
+        used = 0;
+    }
+
+    /**
+     * @return the number of entries stored since the last compaction or clear;
+     *         nulls take no entry
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return the bytes taken by those entries, length varints included
+     */
+    public synchronized long usedBytes() {
+        return used;
+    }
+
+    /**
+     * @return the total capacity of the segments
+     */
+    public long reservedBytes() {
+        long reserved = 0;
+        for (ByteBuffer segment : segments) {
+            reserved += segment.capacity();
+        }
+        return reserved;
+    }
+
+    private ByteBuffer segment(long handle) {
+        return segment(segments, handle);
+    }
+
+    private static ByteBuffer segment(ByteBuffer[] segs, long handle) {
+        long index = handle >>> 32;
+        int offset = (int) handle;
+        if (handle < 0 || index >= segs.length || offset < 0 || offset >= segs[(int) index].capacity()) {
+            throw new IllegalArgumentException("Handle " + handle + " not valid");
+        }
+        return segs[(int) index];
+    }
+
+    private static int readLength(ByteBuffer segment, int offset) {
+        int value = 0;
+        for (int shift = 0; shift < 35 && offset < segment.capacity(); shift += 7) {
+            byte b = segment.get(offset++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0 || segment.capacity() - offset < value) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupt entry at offset " + offset);
+    }
+
+    private static int varintLength(int value) {
+        int n = 1;
+        while ((value >>>= 7) != 0) {
+            n++;
+        }
+        return n;
+    }
+}
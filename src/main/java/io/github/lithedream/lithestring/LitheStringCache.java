@@ -0,0 +1,143 @@
+package io.github.lithedream.lithestring;
+
+/**
+ * Cache of decoded strings shared by the {@link LitheString} instances created
+ * with {@code cacheEnabled}, once installed with
+ * {@link LitheString#setDecodeCache(LitheStringCache)}. Without it, each such
+ * instance soft-caches its own string.
+ *
+ * <p>
+ * Implementations must be safe for concurrent use. {@link #bounded(long)}
+ * gives one with a budget of heap bytes.
+ * </p>
+ *
+ * <pre>{@code
+ * LitheString.setDecodeCache(LitheStringCache.bounded(64 << 20));
+ * ...
+ * LitheStringCache.Stats stats = LitheString.getDecodeCache().stats();
+ * }</pre>
+ */
+public interface LitheStringCache {
+
+    /**
+     * @param key the compressed value
+     * @return its decoded string, or null if it is not cached
+     */
+    String get(LitheString key);
+
+    /**
+     * Offers a decoded string to the cache, which may decline it
+     *
+     * @param key   the compressed value
+     * @param value its decoded string
+     */
+    void put(LitheString key, String value);
+
+    /**
+     * @return the statistics since the cache was created
+     */
+    Stats stats();
+
+    /**
+     * Removes all strings; the statistics are kept
+     */
+    void clear();
+
+    /**
+     * Creates a cache bounded by the estimated heap bytes of its entries.
+     *
+     * <p>
+     * The cache is split into lock-striped segments. Each evicts with a CLOCK
+     * hand that spares recently used entries, and admits a new entry over the
+     * victim only if it was asked for more often, by an approximate frequency
+     * count of recent lookups (TinyLFU): a scan of values read once does not
+     * flush the values read often.
+     * </p>
+     *
+     * @param maxBytes estimated heap bytes of the cached strings and their keys
+     * @return the cache
+     * @throws IllegalArgumentException if maxBytes is not positive
+     */
+    static LitheStringCache bounded(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        return new ClockCache(maxBytes);
+    }
+
+    /**
+     * Snapshot of the statistics of a cache
+     */
+    final class Stats {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long size;
+        private final long weight;
+
+        /**
+         * @param hitCount      lookups that found a string
+         * @param missCount     lookups that did not
+         * @param evictionCount strings removed to make room
+         * @param size          strings in the cache
+         * @param weight        estimated heap bytes of the cached strings
+         */
+        public Stats(long hitCount, long missCount, long evictionCount, long size, long weight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /**
+         * @return lookups that found a string
+         */
+        public long hitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return lookups that did not
+         */
+        public long missCount() {
+            return missCount;
+        }
+
+        /**
+         * @return hits over lookups, 1 if there were none
+         */
+        public double hitRate() {
+            long lookups = hitCount + missCount;
+            return lookups == 0 ? 1.0 : (double) hitCount / lookups;
+        }
+
+        /**
+         * @return strings removed to make room
+         */
+        public long evictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return strings in the cache
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * @return estimated heap bytes of the cached strings
+         */
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + ", size="
+                    + size + ", weight=" + weight + "]";
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.lithedream.lithestring;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Reads the UTF-8 text of a stream written by {@link LitheStringOutputStream},
+ * decompressing one chunk at a time.
+ *
+ * <p>
+ * Reading stops at the end of the compressed stream, so the source can carry
+ * other data after it. A source ending before that throws an
+ * {@link EOFException}, and a corrupt chunk an {@link IOException}.
+ * </p>
+ */
+public final class LitheStringInputStream extends InputStream {
+
+    private static final byte[] EMPTY = {};
+
+    private final InputStream in;
+    private byte[] chunk = EMPTY;
+    private int pos;
+    private boolean ended;
+
+    /**
+     * @param in source of the compressed stream
+     */
+    public LitheStringInputStream(InputStream in) {
+        if (in == null) {
+            throw new NullPointerException();
+        }
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // decodes chunks until one has bytes left; false at the end of the stream
+    private boolean fill() throws IOException {
+        while (pos == chunk.length) {
+            if (ended) {
+                return false;
+            }
+            int length = readVarint();
+            if (length == 0) {
+                ended = true;
+                chunk = EMPTY;
+                pos = 0;
+                return false;
+            }
+            if (length > LitheStringOutputStream.MAX_CHUNK_SIZE) {
+                throw new IOException("Corrupt LitheString stream: chunk of " + length + " bytes");
+            }
+            byte[] zipped = new byte[length];
+            for (int n = 0; n < length;) {
+                int r = in.read(zipped, n, length - n);
+                if (r < 0) {
+                    throw new EOFException("Truncated LitheString stream");
+                }
+                n += r;
+            }
+            try {
+                chunk = LitheStringAlgorithm.unzipUTF8(zipped);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt LitheString stream", e);
+            }
+            pos = 0;
+        }
+        return true;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated LitheString stream");
+            }
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Corrupt LitheString stream: malformed chunk length");
+    }
+}
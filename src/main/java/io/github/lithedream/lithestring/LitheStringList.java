@@ -0,0 +1,438 @@
+package io.github.lithedream.lithestring;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Append-only list of strings kept compressed in a single {@code byte[]}, with
+ * an {@code int[]} of offsets: two objects for the whole list instead of two
+ * per string.
+ *
+ * <p>
+ * {@link #get(int)} decodes on every call. Strings are added with
+ * {@link #add(String)} or collected from a stream with {@link #collector()};
+ * they cannot be replaced or removed, only reordered by
+ * {@link #sort(Comparator)} or {@link #permute(int[])}. The compressed bytes of
+ * the whole list are limited to 2 GB.
+ * </p>
+ *
+ * <p>
+ * {@link #writeTo(OutputStream)} writes the list as one block, also used by
+ * Java serialization. Not safe for concurrent use.
+ * </p>
+ *
+ * <pre>{@code
+ * LitheStringList list = lines.stream().collect(LitheStringList.collector());
+ * String first = list.get(0);
+ * }</pre>
+ */
+public final class LitheStringList extends AbstractList<String> implements RandomAccess, Serializable {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Version of the format written by {@link #writeTo(OutputStream)}
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = "LSL".getBytes(StandardCharsets.US_ASCII);
+
+    // arrays sized by a header being read start at this many bytes and at most
+    // double as the data arrives, so a short stream declaring huge sizes ends
+    // before they are allocated
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private transient byte[] payload;
+    // end of each string in payload, bitwise negated for null
+    private transient int[] ends;
+    private transient int size;
+
+    /**
+     * Creates an empty list
+     */
+    public LitheStringList() {
+        this(16, 256);
+    }
+
+    /**
+     * Creates an empty list sized for the expected content
+     *
+     * @param expectedSize  number of strings
+     * @param expectedBytes total of their compressed bytes
+     */
+    public LitheStringList(int expectedSize, int expectedBytes) {
+        payload = new byte[Math.max(0, expectedBytes)];
+        ends = new int[Math.max(0, expectedSize)];
+    }
+
+    /**
+     * @return a collector of strings into a list; parallel parts are merged
+     *         without compressing again
+     */
+    public static Collector<String, ?, LitheStringList> collector() {
+        return Collector.of(new Supplier<LitheStringList>() {
+            @Override
+            public LitheStringList get() {
+                return new LitheStringList();
+            }
+        }, new BiConsumer<LitheStringList, String>() {
+            @Override
+            public void accept(LitheStringList list, String s) {
+                list.add(s);
+            }
+        }, new BinaryOperator<LitheStringList>() {
+            @Override
+            public LitheStringList apply(LitheStringList left, LitheStringList right) {
+                left.addAll(right);
+                return left;
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int start(int index) {
+        return index == 0 ? 0 : end(ends[index - 1]);
+    }
+
+    private static int end(int entry) {
+        return entry < 0 ? ~entry : entry;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Decodes a string
+     *
+     * @param index
+     * @return the string, possibly null
+     */
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        int entry = ends[index];
+        if (entry < 0) {
+            return null;
+        }
+        int start = start(index);
+        return LitheStringAlgorithm.unzip(payload, start, entry - start);
+    }
+
+    /**
+     * @param index
+     * @return a copy of the compressed bytes of a string, or null
+     */
+    public byte[] getCompressed(int index) {
+        checkIndex(index);
+        int entry = ends[index];
+        return entry < 0 ? null : Arrays.copyOfRange(payload, start(index), entry);
+    }
+
+    /**
+     * Appends a string to the builder, without building the String
+     *
+     * @param index
+     * @param dst   the builder
+     * @return the number of chars appended, 0 for null
+     */
+    public int unzipTo(int index, StringBuilder dst) {
+        checkIndex(index);
+        int entry = ends[index];
+        if (entry < 0) {
+            return 0;
+        }
+        int start = start(index);
+        return LitheStringAlgorithm.unzipTo(payload, start, entry - start, dst);
+    }
+
+    /**
+     * Compares a string of the list with another, without building the String
+     * of the list
+     *
+     * @param index
+     * @param s
+     * @return true if the string at index equals s, or both are null
+     */
+    public boolean equals(int index, String s) {
+        checkIndex(index);
+        int entry = ends[index];
+        if (entry < 0 || s == null) {
+            return entry < 0 && s == null;
+        }
+        int start = start(index);
+        return LitheStringAlgorithm.contentEquals(payload, start, entry - start, s);
+    }
+
+    /**
+     * Compresses the string with {@link LitheString#zip(String)} and appends it
+     *
+     * @param s the string, or null
+     * @return true
+     * @throws IllegalStateException if the list is full
+     */
+    @Override
+    public boolean add(String s) {
+        return addCompressed(LitheStringAlgorithm.zip(s));
+    }
+
+    /**
+     * Appends already compressed bytes
+     *
+     * @param compressed compressed bytes, or null for a null string
+     * @return true
+     * @throws IllegalStateException if the list is full
+     */
+    public boolean addCompressed(byte[] compressed) {
+        append(compressed, 0, compressed != null ? compressed.length : -1);
+        return true;
+    }
+
+    // length -1 appends null
+    private void append(byte[] bytes, int offset, int length) {
+        int start = size == 0 ? 0 : end(ends[size - 1]);
+        ensureCapacity(size + 1, (long) start + Math.max(0, length));
+        int end = start + Math.max(0, length);
+        if (length > 0) {
+            System.arraycopy(bytes, offset, payload, start, length);
+        }
+        ends[size++] = length < 0 ? ~end : end;
+        modCount++;
+    }
+
+    private void ensureCapacity(int minSize, long minBytes) {
+        if (minBytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("LitheStringList full: 2 GB of compressed strings");
+        }
+        if (ends.length < minSize) {
+            ends = Arrays.copyOf(ends, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(minSize, ends.length + (long) (ends.length >> 1) + 1)));
+        }
+        if (payload.length < minBytes) {
+            payload = Arrays.copyOf(payload, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(minBytes, payload.length + (long) (payload.length >> 1) + 1)));
+        }
+    }
+
+    /**
+     * Appends the strings; those of another LitheStringList are copied without
+     * compressing them again
+     */
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        if (!(c instanceof LitheStringList)) {
+            return super.addAll(c);
+        }
+        LitheStringList other = (LitheStringList) c;
+        if (other.size == 0) {
+            return false;
+        }
+        int base = size == 0 ? 0 : end(ends[size - 1]);
+        int otherBytes = end(other.ends[other.size - 1]);
+        int otherSize = other.size;
+        ensureCapacity(size + otherSize, (long) base + otherBytes);
+        System.arraycopy(other.payload, 0, payload, base, otherBytes);
+        for (int i = 0; i < otherSize; i++) {
+            int entry = other.ends[i];
+            ends[size + i] = entry < 0 ? ~(~entry + base) : entry + base;
+        }
+        size += otherSize;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * The order of the strings by the comparator, decoding each string once
+     *
+     * @param comparator the order; null for natural order, with nulls first
+     * @return the indexes of the strings in that order
+     */
+    public int[] sortedOrdinals(Comparator<? super String> comparator) {
+        final String[] strings = toArray(new String[size]);
+        final Comparator<? super String> order = comparator != null ? comparator
+                : Comparator.nullsFirst(Comparator.<String>naturalOrder());
+        Integer[] ordinals = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            ordinals[i] = i;
+        }
+        Arrays.sort(ordinals, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return order.compare(strings[a], strings[b]);
+            }
+        });
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = ordinals[i];
+        }
+        return result;
+    }
+
+    /**
+     * Copies strings of this list, by index, into a new list, without
+     * compressing them again
+     *
+     * @param ordinals indexes of the strings to copy, in order; repeats allowed
+     * @return the new list
+     */
+    public LitheStringList permute(int[] ordinals) {
+        long bytes = 0;
+        for (int ordinal : ordinals) {
+            checkIndex(ordinal);
+            bytes += end(ends[ordinal]) - start(ordinal);
+        }
+        LitheStringList result = new LitheStringList(ordinals.length, (int) Math.min(bytes, Integer.MAX_VALUE - 8));
+        for (int ordinal : ordinals) {
+            int entry = ends[ordinal];
+            int start = start(ordinal);
+            result.append(payload, start, entry < 0 ? -1 : entry - start);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the list in place; see {@link #sortedOrdinals(Comparator)}
+     */
+    @Override
+    public void sort(Comparator<? super String> comparator) {
+        LitheStringList sorted = permute(sortedOrdinals(comparator));
+        payload = sorted.payload;
+        ends = sorted.ends;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Shrinks the arrays to the content
+     */
+    public void trimToSize() {
+        ends = Arrays.copyOf(ends, size);
+        payload = Arrays.copyOf(payload, size == 0 ? 0 : end(ends[size - 1]));
+    }
+
+    /**
+     * @return the total of the compressed bytes
+     */
+    public int compressedBytes() {
+        return size == 0 ? 0 : end(ends[size - 1]);
+    }
+
+    /**
+     * Writes the list as one block: magic "LSL", {@link #FORMAT_VERSION}, the
+     * number of strings, the number of compressed bytes, the end offsets and
+     * the compressed bytes
+     *
+     * @param out destination, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(FORMAT_VERSION);
+        int bytes = compressedBytes();
+        data.writeInt(size);
+        data.writeInt(bytes);
+        for (int i = 0; i < size; i++) {
+            data.writeInt(ends[i]);
+        }
+        data.write(payload, 0, bytes);
+        data.flush();
+    }
+
+    /**
+     * Reads a list written by {@link #writeTo(OutputStream)}
+     *
+     * @param in source, not closed
+     * @return the list
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the content is not a list or its
+     *                                  version is not supported
+     */
+    public static LitheStringList readFrom(InputStream in) throws IOException {
+        LitheStringList list = new LitheStringList(0, 0);
+        list.read(new DataInputStream(in));
+        return list;
+    }
+
+    private void read(DataInputStream data) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IllegalArgumentException("Not a LitheStringList");
+        }
+        int version = data.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("List version " + version + " not supported");
+        }
+        int count = data.readInt();
+        int bytes = data.readInt();
+        if (count < 0 || bytes < 0) {
+            throw new IllegalArgumentException("Corrupt LitheStringList");
+        }
+        int[] readEnds = new int[Math.min(count, READ_CHUNK / 4)];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == readEnds.length) {
+                readEnds = Arrays.copyOf(readEnds, (int) Math.min(count, 2L * i));
+            }
+            readEnds[i] = data.readInt();
+            int end = end(readEnds[i]);
+            if (end < previous || end > bytes) {
+                throw new IllegalArgumentException("Corrupt LitheStringList");
+            }
+            previous = end;
+        }
+        byte[] readPayload = new byte[Math.min(bytes, READ_CHUNK)];
+        for (int pos = 0; pos < bytes; pos = readPayload.length) {
+            if (pos == readPayload.length) {
+                readPayload = Arrays.copyOf(readPayload, (int) Math.min(bytes, 2L * pos));
+            }
+            data.readFully(readPayload, pos, readPayload.length - pos);
+        }
+        ends = readEnds;
+        payload = readPayload;
+        size = count;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        writeTo(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        read(new DataInputStream(in));
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.lithedream.lithestring;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Compression model trained on sample data by {@link LitheStringTrainer}: a
+ * preset deflate dictionary, a static Huffman table (as byte frequencies) and
+ * statistics about the samples.
+ *
+ * <p>
+ * A model is saved with {@link #writeTo(OutputStream)}, loaded at startup with
+ * {@link #readFrom(InputStream)} and activated with {@link #register()}, which
+ * registers its dictionary and its table under the model id.
+ * </p>
+ *
+ * <pre>{@code
+ * LitheStringModel model = LitheStringModel.readFrom(in);
+ * model.register();
+ * byte[] compressed = model.zip(input);
+ * String text = LitheString.unzip(compressed);
+ * }</pre>
+ */
+public final class LitheStringModel implements Serializable {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Version of the format written by {@link #writeTo(OutputStream)}
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = "LSM".getBytes(StandardCharsets.US_ASCII);
+
+    private final int id;
+    private final byte[] dictionary;
+    private final int[] byteFrequencies;
+    private final long sampleCount;
+    private final long totalChars;
+    private final long totalUtf8Bytes;
+
+    LitheStringModel(int id, byte[] dictionary, int[] byteFrequencies, long sampleCount, long totalChars,
+            long totalUtf8Bytes) {
+        if (id < 0 || id > 255) {
+            throw new IllegalArgumentException("Model id " + id + " not valid. Valid values are 0-255");
+        }
+        if (byteFrequencies.length != 256) {
+            throw new IllegalArgumentException("A model needs 256 byte frequencies");
+        }
+        this.id = id;
+        this.dictionary = dictionary;
+        this.byteFrequencies = byteFrequencies;
+        this.sampleCount = sampleCount;
+        this.totalChars = totalChars;
+        this.totalUtf8Bytes = totalUtf8Bytes;
+    }
+
+    /**
+     * Registers the dictionary and the Huffman table of this model under its id.
+     * Registering the same model again does nothing.
+     *
+     * @throws IllegalArgumentException if the id is already taken by another
+     *                                  dictionary or table
+     */
+    public void register() {
+        if (dictionary.length > 0) {
+            LitheStringAlgorithm.registerDictionary(id, dictionary);
+        }
+        LitheStringAlgorithm.registerHuffmanTable(id, byteFrequencies);
+    }
+
+    /**
+     * Compresses a string with the best encoding, including the dictionary and
+     * the table of this model, which must be registered.
+     * The output is never larger than the UTF-8 bytes of the input.
+     *
+     * @param input the input string
+     * @return compressed bytes, to be decoded with {@link LitheString#unzip}
+     * @throws IllegalArgumentException if the model is not registered
+     */
+    public byte[] zip(String input) {
+        return LitheStringAlgorithm.zipWith(input, dictionary.length > 0 ? id : -1, id);
+    }
+
+    /**
+     * @return the id of the dictionary and of the table, from 0 to 255
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return a copy of the preset dictionary, empty if the samples shared
+     *         nothing
+     */
+    public byte[] getDictionary() {
+        return Arrays.copyOf(dictionary, dictionary.length);
+    }
+
+    /**
+     * @return a copy of the frequency of every byte value in the UTF-8 samples
+     */
+    public int[] getByteFrequencies() {
+        return Arrays.copyOf(byteFrequencies, byteFrequencies.length);
+    }
+
+    /**
+     * @return how many samples the model was trained on
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the total length of the samples, in UTF-16 chars
+     */
+    public long getTotalChars() {
+        return totalChars;
+    }
+
+    /**
+     * @return the total length of the samples, in UTF-8 bytes
+     */
+    public long getTotalUtf8Bytes() {
+        return totalUtf8Bytes;
+    }
+
+    /**
+     * Writes the model in a compact binary format, starting with a magic number
+     * and {@link #FORMAT_VERSION}
+     *
+     * @param out destination, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(FORMAT_VERSION);
+        data.writeByte(id);
+        data.writeLong(sampleCount);
+        data.writeLong(totalChars);
+        data.writeLong(totalUtf8Bytes);
+        data.writeInt(dictionary.length);
+        data.write(dictionary);
+        for (int f : byteFrequencies) {
+            data.writeInt(f);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a model written by {@link #writeTo(OutputStream)}
+     *
+     * @param in source, not closed
+     * @return the model, not yet registered
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the content is not a model or its
+     *                                  version is not supported
+     */
+    public static LitheStringModel readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IllegalArgumentException("Not a LitheString model");
+        }
+        int version = data.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Model version " + version + " not supported");
+        }
+        int id = data.readUnsignedByte();
+        long sampleCount = data.readLong();
+        long totalChars = data.readLong();
+        long totalUtf8Bytes = data.readLong();
+        int dictionaryLength = data.readInt();
+        if (dictionaryLength < 0 || dictionaryLength > LitheStringAlgorithm.MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Dictionary length " + dictionaryLength + " not valid");
+        }
+        byte[] dictionary = new byte[dictionaryLength];
+        data.readFully(dictionary);
+        int[] byteFrequencies = new int[256];
+        for (int i = 0; i < byteFrequencies.length; i++) {
+            byteFrequencies[i] = data.readInt();
+        }
+        return new LitheStringModel(id, dictionary, byteFrequencies, sampleCount, totalChars, totalUtf8Bytes);
+    }
+}
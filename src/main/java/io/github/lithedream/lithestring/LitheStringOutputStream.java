@@ -0,0 +1,176 @@
+package io.github.lithedream.lithestring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Compresses UTF-8 text written to it into a stream of chunks, without holding
+ * the whole text in memory.
+ *
+ * <p>
+ * The text is cut into chunks of at most the chunk size, on UTF-8 character
+ * boundaries, and every chunk is compressed on its own with the best encoding,
+ * like {@link LitheString#zip(String)}. Each chunk is written as the varint
+ * length of its compressed bytes followed by the bytes; a length of 0 ends the
+ * stream. {@link LitheStringInputStream} reads it back.
+ * </p>
+ *
+ * <p>
+ * The written bytes must be valid UTF-8. {@link #flush()} writes the buffered
+ * text as a chunk, so frequent flushes cost compression.
+ * </p>
+ */
+public final class LitheStringOutputStream extends OutputStream {
+
+    /**
+     * Default chunk size, in UTF-8 bytes
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Largest chunk size, in UTF-8 bytes
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] varint = new byte[5];
+    private int count;
+    private boolean finished;
+
+    /**
+     * @param out destination of the compressed stream
+     */
+    public LitheStringOutputStream(OutputStream out) {
+        this(out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param out       destination of the compressed stream
+     * @param chunkSize largest chunk, in UTF-8 bytes, from 4 to
+     *                  {@link #MAX_CHUNK_SIZE}
+     * @throws IllegalArgumentException if the chunk size is not valid
+     */
+    public LitheStringOutputStream(OutputStream out, int chunkSize) {
+        if (chunkSize < 4 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException(
+                    "Chunk size " + chunkSize + " not valid. Valid values are 4-" + MAX_CHUNK_SIZE);
+        }
+        if (out == null) {
+            throw new NullPointerException();
+        }
+        this.out = out;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            writeChunk(false);
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeChunk(false);
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the buffered text as a chunk, then flushes the destination. An
+     * incomplete UTF-8 character at the end stays buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeChunk(false);
+        out.flush();
+    }
+
+    /**
+     * Writes the buffered text and the end of the stream, without closing the
+     * destination. Nothing can be written afterwards.
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        writeChunk(true);
+        out.write(0);
+        finished = true;
+    }
+
+    /**
+     * Finishes the stream and closes the destination
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+    }
+
+    // writes the buffer up to the last complete UTF-8 character, or all of it
+    private void writeChunk(boolean all) throws IOException {
+        int cut = all ? count : characterBoundary();
+        if (cut == 0) {
+            return;
+        }
+        byte[] zipped = LitheStringAlgorithm.zipUTF8(Arrays.copyOf(buffer, cut));
+        int n = writeVarint(zipped.length);
+        out.write(varint, 0, n);
+        out.write(zipped);
+        count -= cut;
+        System.arraycopy(buffer, cut, buffer, 0, count);
+    }
+
+    // start of the trailing incomplete character, if any: a chunk that is
+    // full of continuation bytes is cut anyway
+    private int characterBoundary() {
+        for (int i = count - 1; i >= 0 && i >= count - 4; i--) {
+            int b = buffer[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                int length = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+                return i + length <= count ? count : i > 0 ? i : count;
+            }
+        }
+        return count;
+    }
+
+    private int writeVarint(int value) {
+        int n = 0;
+        while ((value & ~0x7F) != 0) {
+            varint[n++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        varint[n++] = (byte) value;
+        return n;
+    }
+}
@@ -0,0 +1,267 @@
+package io.github.lithedream.lithestring;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Concurrent intern pool of {@link LitheString}: repeated values share one
+ * instance, and a string already in the pool is not compressed again.
+ *
+ * <p>
+ * A lookup hashes the String with {@link String#hashCode()}, cached by the
+ * String itself, and confirms a candidate by comparing it with the compressed
+ * bytes, without building a String. The pool is split into lock-striped hash
+ * tables. It holds its values through weak references: a value no longer used
+ * elsewhere leaves the pool at the next garbage collection. A bounded pool also
+ * keeps strong references to the values interned or found most recently, so
+ * that hot values survive between uses.
+ * </p>
+ *
+ * <p>
+ * Pooled instances are immutable: {@link LitheString#getBytes()} returns a
+ * copy. The pool is safe for concurrent use.
+ * </p>
+ *
+ * <pre>{@code
+ * LitheStringPool pool = LitheStringPool.bounded(10_000);
+ * LitheString status = pool.intern(row.getStatus());
+ * }</pre>
+ */
+public final class LitheStringPool {
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    private LitheStringPool(int retained) {
+        int count = Integer.highestOneBit(Math.max(4, Math.min(64, Runtime.getRuntime().availableProcessors() * 4)));
+        this.stripes = new Stripe[count];
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe((retained + count - 1) / count);
+        }
+    }
+
+    /**
+     * @return a pool whose values stay only while they are used elsewhere
+     */
+    public static LitheStringPool weak() {
+        return new LitheStringPool(0);
+    }
+
+    /**
+     * @param retained number of recently used values the pool keeps even when
+     *                 nothing else uses them
+     * @return a pool that also keeps its most recently used values
+     * @throws IllegalArgumentException if retained is negative
+     */
+    public static LitheStringPool bounded(int retained) {
+        if (retained < 0) {
+            throw new IllegalArgumentException("Retained count must not be negative: " + retained);
+        }
+        return new LitheStringPool(retained);
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[hash >>> stripeShift];
+    }
+
+    /**
+     * Returns the pooled instance of a string, compressing it with
+     * {@link LitheString#zip(String)} only if it is not in the pool yet
+     *
+     * @param s the string
+     * @return the shared instance, equal to {@code LitheString.of(s)}; null if
+     *         s is null
+     */
+    public LitheString intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        int hash = spread(s.hashCode());
+        return stripe(hash).intern(hash, s);
+    }
+
+    /**
+     * Returns the pooled instance with the same compressed bytes, adding an
+     * immutable copy of value if there is none. Finding the string hash decodes
+     * the value.
+     *
+     * @param value the value
+     * @return the shared instance, equal to value; value itself if it or its
+     *         bytes are null
+     */
+    public LitheString intern(LitheString value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.internalBytes();
+        if (bytes == null) {
+            return value;
+        }
+        int hash = spread(LitheStringAlgorithm.unzip(bytes).hashCode());
+        return stripe(hash).intern(hash, bytes);
+    }
+
+    /**
+     * @return the number of values in the pool, including those collected but
+     *         not removed yet
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all values
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private static final class Entry extends WeakReference<LitheString> {
+        final int hash;
+        // the bytes are those of LitheString.zip, so intern(String) may return it
+        boolean canonical;
+        Entry next;
+
+        Entry(LitheString value, int hash, boolean canonical, Entry next, ReferenceQueue<LitheString> queue) {
+            super(value, queue);
+            this.hash = hash;
+            this.canonical = canonical;
+            this.next = next;
+        }
+    }
+
+    private static final class Stripe {
+        private final ReferenceQueue<LitheString> queue = new ReferenceQueue<>();
+        // strong references to the values used most recently
+        private final LitheString[] recent;
+        private int recentCursor;
+        private Entry[] table = new Entry[16];
+        private int size;
+
+        Stripe(int retained) {
+            this.recent = new LitheString[retained];
+        }
+
+        synchronized LitheString intern(int hash, String s) {
+            expunge();
+            Entry sameBytes = null;
+            LitheString sameValue = null;
+            byte[] zipped = null;
+            for (Entry e = table[hash & (table.length - 1)]; e != null; e = e.next) {
+                LitheString value = e.get();
+                if (e.hash != hash || value == null) {
+                    continue;
+                }
+                byte[] bytes = value.internalBytes();
+                if (e.canonical) {
+                    if (LitheStringAlgorithm.contentEquals(bytes, 0, bytes.length, s)) {
+                        return touch(value);
+                    }
+                    continue;
+                }
+                // added by intern(LitheString): equal to LitheString.of(s) only
+                // with the same bytes
+                if (zipped == null) {
+                    zipped = LitheStringAlgorithm.zip(s);
+                }
+                if (Arrays.equals(bytes, zipped)) {
+                    sameBytes = e;
+                    sameValue = value;
+                    break;
+                }
+            }
+            if (sameBytes != null) {
+                sameBytes.canonical = true;
+                return touch(sameValue);
+            }
+            LitheString value = new LitheString(zipped != null ? zipped : LitheStringAlgorithm.zip(s), true, false);
+            add(value, hash, true);
+            return touch(value);
+        }
+
+        synchronized LitheString intern(int hash, byte[] bytes) {
+            expunge();
+            for (Entry e = table[hash & (table.length - 1)]; e != null; e = e.next) {
+                LitheString value = e.get();
+                if (e.hash == hash && value != null && Arrays.equals(value.internalBytes(), bytes)) {
+                    return touch(value);
+                }
+            }
+            LitheString value = LitheString.fromBytes(bytes, true, false);
+            add(value, hash, false);
+            return touch(value);
+        }
+
+        private LitheString touch(LitheString value) {
+            if (recent.length > 0) {
+                recent[recentCursor] = value;
+                recentCursor = recentCursor + 1 == recent.length ? 0 : recentCursor + 1;
+            }
+            return value;
+        }
+
+        private void add(LitheString value, int hash, boolean canonical) {
+            if (size >= table.length - (table.length >>> 2)) {
+                resize();
+            }
+            int bucket = hash & (table.length - 1);
+            table[bucket] = new Entry(value, hash, canonical, table[bucket], queue);
+            size++;
+        }
+
+        private void resize() {
+            Entry[] old = table;
+            table = new Entry[old.length * 2];
+            for (Entry head : old) {
+                for (Entry e = head; e != null;) {
+                    Entry next = e.next;
+                    int bucket = e.hash & (table.length - 1);
+                    e.next = table[bucket];
+                    table[bucket] = e;
+                    e = next;
+                }
+            }
+        }
+
+        private void expunge() {
+            for (Reference<? extends LitheString> ref; (ref = queue.poll()) != null;) {
+                Entry cleared = (Entry) ref;
+                int bucket = cleared.hash & (table.length - 1);
+                for (Entry e = table[bucket], previous = null; e != null; previous = e, e = e.next) {
+                    if (e == cleared) {
+                        if (previous == null) {
+                            table[bucket] = e.next;
+                        } else {
+                            previous.next = e.next;
+                        }
+                        size--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(table, null);
+            Arrays.fill(recent, null);
+            size = 0;
+        }
+    }
+}
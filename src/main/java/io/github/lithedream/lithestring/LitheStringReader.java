@@ -0,0 +1,21 @@
+package io.github.lithedream.lithestring;
+
+import java.io.FilterReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the text of a stream written by {@link LitheStringWriter} or
+ * {@link LitheStringOutputStream}, decompressing one chunk at a time. Errors
+ * are the ones of {@link LitheStringInputStream}.
+ */
+public final class LitheStringReader extends FilterReader {
+
+    /**
+     * @param in source of the compressed stream
+     */
+    public LitheStringReader(InputStream in) {
+        super(new InputStreamReader(new LitheStringInputStream(in), StandardCharsets.UTF_8));
+    }
+}
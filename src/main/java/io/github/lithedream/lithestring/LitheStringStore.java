@@ -0,0 +1,199 @@
+package io.github.lithedream.lithestring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Read-only view of a persistent string table written by
+ * {@link LitheStringStoreWriter}, memory-mapped so that opening it costs no
+ * parsing and its pages are shared by the processes reading it.
+ *
+ * <p>
+ * The table is made of two files:
+ * </p>
+ * <ul>
+ * <li>a data file: an 8-byte header ("LSD", the format version, 4 zero bytes)
+ * followed by the compressed strings, one after the other;</li>
+ * <li>an index file: an 8-byte header ("LSI", the format version, 4 zero bytes)
+ * followed by a big-endian long per string, the end of its bytes in the data
+ * file, bitwise negated for a null string.</li>
+ * </ul>
+ *
+ * <p>
+ * A string is found by its ordinal in O(1) and decoded only when asked for.
+ * The store sees the strings written before it was opened. It is safe for
+ * concurrent use.
+ * </p>
+ *
+ * <pre>{@code
+ * try (LitheStringStore store = LitheStringStore.open(data, index)) {
+ *     String text = store.get(42);
+ * }
+ * }</pre>
+ */
+public final class LitheStringStore implements Closeable {
+
+    /**
+     * Version of the format
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    static final byte[] DATA_MAGIC = "LSD".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INDEX_MAGIC = "LSI".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER_LENGTH = 8;
+
+    private final MappedFile data;
+    private final MappedFile index;
+    private final long size;
+
+    private LitheStringStore(MappedFile data, MappedFile index, long size) {
+        this.data = data;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * Maps a store
+     *
+     * @param data  the data file
+     * @param index the index file
+     * @return the store
+     * @throws IOException              if the files cannot be read
+     * @throws IllegalArgumentException if they are not a store, or their
+     *                                  version is not supported
+     */
+    public static LitheStringStore open(Path data, Path index) throws IOException {
+        return open(data, index, MappedFile.DEFAULT_WINDOW_SIZE);
+    }
+
+    static LitheStringStore open(Path dataPath, Path indexPath, int windowSize) throws IOException {
+        long indexSize = MappedFile.size(indexPath);
+        long size = Math.max(0, (indexSize - HEADER_LENGTH) / 8);
+        MappedFile index = new MappedFile(indexPath, Math.min(indexSize, HEADER_LENGTH + size * 8), windowSize);
+        MappedFile data = null;
+        try {
+            checkHeader(index, INDEX_MAGIC);
+            long dataEnd = size > 0 ? end(index.getLong(HEADER_LENGTH + (size - 1) * 8)) : HEADER_LENGTH;
+            if (MappedFile.size(dataPath) < dataEnd) {
+                throw new IllegalArgumentException("Data file shorter than its index");
+            }
+            data = new MappedFile(dataPath, dataEnd, windowSize);
+            checkHeader(data, DATA_MAGIC);
+            return new LitheStringStore(data, index, size);
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            if (data != null) {
+                data.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void checkHeader(MappedFile file, byte[] magic) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        if (file.size() < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Not a LitheString store");
+        }
+        file.get(0, header, 0, HEADER_LENGTH);
+        if (!Arrays.equals(Arrays.copyOf(header, magic.length), magic)) {
+            throw new IllegalArgumentException("Not a LitheString store");
+        }
+        if (header[magic.length] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Store version " + header[magic.length] + " not supported");
+        }
+    }
+
+    // the index holds the end of each entry, negated for null
+    static long end(long indexEntry) {
+        return indexEntry < 0 ? ~indexEntry : indexEntry;
+    }
+
+    /**
+     * @return the number of strings
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param ordinal from 0 to size() - 1
+     * @return the compressed bytes of the string, or null for a null string
+     * @throws IndexOutOfBoundsException if the ordinal is out of range
+     * @throws IOException               if reading fails
+     */
+    public byte[] getCompressed(long ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of range for size " + size);
+        }
+        long entry = index.getLong(HEADER_LENGTH + ordinal * 8);
+        if (entry < 0) {
+            return null;
+        }
+        long start = ordinal == 0 ? HEADER_LENGTH : end(index.getLong(HEADER_LENGTH + (ordinal - 1) * 8));
+        if (start > entry || entry - start > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Corrupt index at ordinal " + ordinal);
+        }
+        byte[] compressed = new byte[(int) (entry - start)];
+        data.get(start, compressed, 0, compressed.length);
+        return compressed;
+    }
+
+    /**
+     * @param ordinal from 0 to size() - 1
+     * @return the string
+     * @throws IndexOutOfBoundsException if the ordinal is out of range
+     * @throws IOException               if reading fails
+     */
+    public String get(long ordinal) throws IOException {
+        return LitheStringAlgorithm.unzip(getCompressed(ordinal));
+    }
+
+    /**
+     * Appends a string to the builder, without building the String
+     *
+     * @param ordinal from 0 to size() - 1
+     * @param dst     the builder
+     * @return the number of chars appended, 0 for a null string
+     * @throws IndexOutOfBoundsException if the ordinal is out of range
+     * @throws IOException               if reading fails
+     */
+    public int unzipTo(long ordinal, StringBuilder dst) throws IOException {
+        byte[] compressed = getCompressed(ordinal);
+        return compressed != null ? LitheStringAlgorithm.unzipTo(compressed, dst) : 0;
+    }
+
+    /**
+     * Compares a string of the store with another, without building the String
+     * of the store
+     *
+     * @param ordinal from 0 to size() - 1
+     * @param s
+     * @return true if the string at ordinal equals s, or both are null
+     * @throws IndexOutOfBoundsException if the ordinal is out of range
+     * @throws IOException               if reading fails
+     */
+    public boolean equals(long ordinal, String s) throws IOException {
+        byte[] compressed = getCompressed(ordinal);
+        if (compressed == null || s == null) {
+            return compressed == null && s == null;
+        }
+        return LitheStringAlgorithm.contentEquals(compressed, 0, compressed.length, s);
+    }
+
+    /**
+     * Closes the files; the mappings are released when they are collected
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
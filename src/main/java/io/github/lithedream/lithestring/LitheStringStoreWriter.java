@@ -0,0 +1,206 @@
+package io.github.lithedream.lithestring;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Appends strings to a persistent table read by {@link LitheStringStore}; see
+ * there for the format. Not safe for concurrent use.
+ *
+ * <p>
+ * The data of a string is written before its index entry, so a table cut short
+ * by a crash is still valid: opening it again drops what the index does not
+ * cover, and appends after it.
+ * </p>
+ *
+ * <pre>{@code
+ * try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+ *     long ordinal = writer.add("hello world");
+ * }
+ * }</pre>
+ */
+public final class LitheStringStoreWriter implements Closeable, Flushable {
+
+    private final OutputStream data;
+    private final FileChannel indexChannel;
+    // index entries are written only after the data they cover
+    private final ByteBuffer index = ByteBuffer.allocate(8 * 1024);
+    private long dataEnd;
+    private long size;
+
+    private LitheStringStoreWriter(FileChannel dataChannel, FileChannel indexChannel, long dataEnd, long size) {
+        this.data = new BufferedOutputStream(Channels.newOutputStream(dataChannel), 64 * 1024);
+        this.indexChannel = indexChannel;
+        this.dataEnd = dataEnd;
+        this.size = size;
+    }
+
+    /**
+     * Creates a table, or opens an existing one to append to it
+     *
+     * @param data  the data file
+     * @param index the index file
+     * @return the writer
+     * @throws IOException              if the files cannot be opened
+     * @throws IllegalArgumentException if they exist but are not a store, their
+     *                                  version is not supported, or the index is
+     *                                  empty but the data file is not
+     */
+    public static LitheStringStoreWriter open(Path data, Path index) throws IOException {
+        FileChannel dataChannel = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel indexChannel = null;
+        try {
+            indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (indexChannel.size() == 0) {
+                // a new table, or one whose creation stopped before its index header
+                if (dataChannel.size() > LitheStringStore.HEADER_LENGTH) {
+                    throw new IllegalArgumentException("Data file holds data but its index is empty");
+                }
+                if (dataChannel.size() == LitheStringStore.HEADER_LENGTH) {
+                    checkHeader(dataChannel, LitheStringStore.DATA_MAGIC);
+                }
+                writeHeader(dataChannel, LitheStringStore.DATA_MAGIC);
+                writeHeader(indexChannel, LitheStringStore.INDEX_MAGIC);
+            } else {
+                checkHeader(dataChannel, LitheStringStore.DATA_MAGIC);
+                checkHeader(indexChannel, LitheStringStore.INDEX_MAGIC);
+            }
+            long size = (indexChannel.size() - LitheStringStore.HEADER_LENGTH) / 8;
+            long dataEnd = LitheStringStore.HEADER_LENGTH;
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(8);
+                read(indexChannel, last, LitheStringStore.HEADER_LENGTH + (size - 1) * 8);
+                dataEnd = LitheStringStore.end(last.getLong(0));
+            }
+            if (dataChannel.size() < dataEnd) {
+                throw new IllegalArgumentException("Data file shorter than its index");
+            }
+            // drops a partly written tail
+            indexChannel.truncate(LitheStringStore.HEADER_LENGTH + size * 8);
+            dataChannel.truncate(dataEnd);
+            indexChannel.position(indexChannel.size());
+            dataChannel.position(dataEnd);
+            return new LitheStringStoreWriter(dataChannel, indexChannel, dataEnd, size);
+        } catch (IOException | RuntimeException e) {
+            dataChannel.close();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, byte[] magic) throws IOException {
+        byte[] header = Arrays.copyOf(magic, LitheStringStore.HEADER_LENGTH);
+        header[magic.length] = LitheStringStore.FORMAT_VERSION;
+        channel.truncate(0);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, byte[] magic) throws IOException {
+        if (channel.size() < LitheStringStore.HEADER_LENGTH) {
+            throw new IllegalArgumentException("Not a LitheString store");
+        }
+        ByteBuffer header = ByteBuffer.allocate(LitheStringStore.HEADER_LENGTH);
+        read(channel, header, 0);
+        if (!Arrays.equals(Arrays.copyOf(header.array(), magic.length), magic)) {
+            throw new IllegalArgumentException("Not a LitheString store");
+        }
+        if (header.get(magic.length) != LitheStringStore.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Store version " + header.get(magic.length) + " not supported");
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Compresses the string with {@link LitheString#zip(String)} and appends it
+     *
+     * @param input the string, or null
+     * @return its ordinal
+     * @throws IOException if writing fails
+     */
+    public long add(String input) throws IOException {
+        return addCompressed(LitheStringAlgorithm.zip(input));
+    }
+
+    /**
+     * Appends already compressed bytes
+     *
+     * @param compressed compressed bytes, or null for a null string
+     * @return their ordinal
+     * @throws IOException if writing fails
+     */
+    public long addCompressed(byte[] compressed) throws IOException {
+        if (compressed != null) {
+            data.write(compressed);
+            dataEnd += compressed.length;
+        }
+        if (!index.hasRemaining()) {
+            flush();
+        }
+        index.putLong(compressed != null ? dataEnd : ~dataEnd);
+        return size++;
+    }
+
+    /**
+     * @return the number of strings in the table
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes the buffered strings to the files, data first; a store opened
+     * afterwards sees them
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        data.flush();
+        index.flip();
+        while (index.hasRemaining()) {
+            indexChannel.write(index);
+        }
+        index.clear();
+    }
+
+    /**
+     * Flushes and closes the files
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                data.close();
+            } finally {
+                indexChannel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.lithedream.lithestring;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.lithedream.lithestring.internal.LitheStringAlgorithm;
+
+/**
+ * Trains a {@link LitheStringModel} on a sample corpus, offline and
+ * repeatably: the same samples always give the same model.
+ *
+ * <p>
+ * From the command line, with one sample per line:
+ * </p>
+ *
+ * <pre>
+ * java -cp lithestring.jar io.github.lithedream.lithestring.LitheStringTrainer corpus.txt model.bin 1 [dictionary size]
+ * </pre>
+ */
+public final class LitheStringTrainer {
+
+    /**
+     * Default size of the preset dictionary: deflate hashes the whole dictionary
+     * for every string, so a small one keeps short strings fast
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 8 * 1024;
+
+    private LitheStringTrainer() {
+    }
+
+    /**
+     * Trains a model with a dictionary of {@link #DEFAULT_DICTIONARY_SIZE}
+     *
+     * @param samples strings representative of the data to compress
+     * @param id      id the model registers its dictionary and table under, from
+     *                0 to 255
+     * @return the model
+     */
+    public static LitheStringModel train(Iterable<String> samples, int id) {
+        return train(samples, id, DEFAULT_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Trains a model. The samples are held in memory while training.
+     *
+     * @param samples        strings representative of the data to compress
+     * @param id             id the model registers its dictionary and table
+     *                       under, from 0 to 255
+     * @param dictionarySize maximum size of the dictionary, up to 32 KB
+     * @return the model
+     * @throws IllegalArgumentException if the id or the dictionary size is not
+     *                                  valid
+     */
+    public static LitheStringModel train(Iterable<String> samples, int id, int dictionarySize) {
+        List<byte[]> utf8Samples = new ArrayList<>();
+        long[] counts = new long[256];
+        long totalChars = 0;
+        long totalUtf8Bytes = 0;
+        for (String sample : samples) {
+            if (sample == null) {
+                continue;
+            }
+            byte[] utf8 = sample.getBytes(StandardCharsets.UTF_8);
+            utf8Samples.add(utf8);
+            for (byte b : utf8) {
+                counts[b & 0xFF]++;
+            }
+            totalChars += sample.length();
+            totalUtf8Bytes += utf8.length;
+        }
+        byte[] dictionary = LitheStringAlgorithm.trainDictionary(utf8Samples, dictionarySize);
+        return new LitheStringModel(id, dictionary, toFrequencies(counts), utf8Samples.size(), totalChars,
+                totalUtf8Bytes);
+    }
+
+    /**
+     * Trains a model on a UTF-8 text file, one sample per line
+     *
+     * @param corpus         the file
+     * @param id             id of the model, from 0 to 255
+     * @param dictionarySize maximum size of the dictionary, up to 32 KB
+     * @return the model
+     * @throws IOException if the file cannot be read
+     */
+    public static LitheStringModel train(Path corpus, int id, int dictionarySize) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return train(lines, id, dictionarySize);
+    }
+
+    // counts halved until they fit an int, without turning any of them into 0
+    private static int[] toFrequencies(long[] counts) {
+        long max = 0;
+        for (long c : counts) {
+            max = Math.max(max, c);
+        }
+        int shift = 0;
+        while ((max >>> shift) > Integer.MAX_VALUE) {
+            shift++;
+        }
+        int[] frequencies = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            frequencies[i] = counts[i] == 0 ? 0 : (int) Math.max(1, counts[i] >>> shift);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Command line entry point:
+     * {@code <corpus file> <model file> <id> [dictionary size]}
+     *
+     * @param args
+     * @throws IOException if the corpus cannot be read or the model written
+     */
+    public static void main(String[] args) throws IOException {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Body of {@link #main(String[])}
+     *
+     * @param args
+     * @param out  receives the summary of the model
+     * @param err  receives the usage
+     * @return the exit status
+     * @throws IOException if the corpus cannot be read or the model written
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            err.println("Usage: LitheStringTrainer <corpus file, one sample per line> <model file> <id 0-255>"
+                    + " [dictionary size, default " + DEFAULT_DICTIONARY_SIZE + "]");
+            return 2;
+        }
+        int id = Integer.parseInt(args[2]);
+        int dictionarySize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_DICTIONARY_SIZE;
+        LitheStringModel model = train(Paths.get(args[0]), id, dictionarySize);
+        try (OutputStream file = Files.newOutputStream(Paths.get(args[1]))) {
+            model.writeTo(file);
+        }
+        out.println("Model " + id + ": " + model.getSampleCount() + " samples, " + model.getTotalChars()
+                + " chars, " + model.getTotalUtf8Bytes() + " UTF-8 bytes, dictionary of "
+                + model.getDictionary().length + " bytes");
+        return 0;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.lithedream.lithestring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Compresses text written to it into a stream of chunks, like
+ * {@link LitheStringOutputStream} over the UTF-8 bytes of the text.
+ * {@link LitheStringReader} reads it back.
+ *
+ * <p>
+ * Unpaired surrogates are written as {@code '?'}, like
+ * {@link String#getBytes(java.nio.charset.Charset)} does.
+ * </p>
+ */
+public final class LitheStringWriter extends Writer {
+
+    private final LitheStringOutputStream out;
+    private final byte[] utf8 = new byte[1024];
+    private char highSurrogate;
+
+    /**
+     * @param out destination of the compressed stream
+     */
+    public LitheStringWriter(OutputStream out) {
+        this(out, LitheStringOutputStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param out       destination of the compressed stream
+     * @param chunkSize largest chunk, in UTF-8 bytes, from 4 to
+     *                  {@link LitheStringOutputStream#MAX_CHUNK_SIZE}
+     * @throws IllegalArgumentException if the chunk size is not valid
+     */
+    public LitheStringWriter(OutputStream out, int chunkSize) {
+        this.out = new LitheStringOutputStream(out, chunkSize);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int n = 0;
+        for (int i = off; i < off + len; i++) {
+            if (n > utf8.length - 4) {
+                out.write(utf8, 0, n);
+                n = 0;
+            }
+            n = encode(cbuf[i], n);
+        }
+        out.write(utf8, 0, n);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > str.length() - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int n = 0;
+        for (int i = off; i < off + len; i++) {
+            if (n > utf8.length - 4) {
+                out.write(utf8, 0, n);
+                n = 0;
+            }
+            n = encode(str.charAt(i), n);
+        }
+        out.write(utf8, 0, n);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(utf8, 0, encode((char) c, 0));
+    }
+
+    /**
+     * Writes the buffered text as a chunk, then flushes the destination. A high
+     * surrogate at the end waits for its pair.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the buffered text and the end of the stream, without closing the
+     * destination. Nothing can be written afterwards.
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            out.write('?');
+        }
+        out.finish();
+    }
+
+    /**
+     * Finishes the stream and closes the destination
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    // appends the UTF-8 bytes of c at utf8[n], returns the new length
+    private int encode(char c, int n) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                utf8[n++] = (byte) (0xF0 | (cp >>> 18));
+                utf8[n++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+                utf8[n++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+                utf8[n++] = (byte) (0x80 | (cp & 0x3F));
+                return n;
+            }
+            utf8[n++] = '?';
+        }
+        if (c < 0x80) {
+            utf8[n++] = (byte) c;
+        } else if (c < 0x800) {
+            utf8[n++] = (byte) (0xC0 | (c >>> 6));
+            utf8[n++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            utf8[n++] = '?';
+        } else {
+            utf8[n++] = (byte) (0xE0 | (c >>> 12));
+            utf8[n++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+            utf8[n++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return n;
+    }
+}
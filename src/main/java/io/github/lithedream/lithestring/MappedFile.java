@@ -0,0 +1,107 @@
+package io.github.lithedream.lithestring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only mapping of the start of a file, in windows: a single mapped buffer
+ * cannot exceed 2 GB. Reads crossing two windows go through the channel.
+ */
+final class MappedFile implements Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final int windowShift;
+    private final long size;
+
+    /**
+     * @param path
+     * @param size       bytes to map, at most the file size
+     * @param windowSize a power of two, multiple of 8
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFile(Path path, long size, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = size;
+        this.windowShift = Integer.numberOfTrailingZeros(windowSize);
+        int count = (int) ((size + windowSize - 1) >>> windowShift);
+        this.windows = new MappedByteBuffer[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << windowShift;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path
+     * @return the file size
+     * @throws IOException if the file cannot be opened
+     */
+    static long size(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.size();
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @param pos a multiple of 8
+     * @return the big-endian long at pos
+     */
+    long getLong(long pos) {
+        return windows[(int) (pos >>> windowShift)].getLong((int) (pos & ((1 << windowShift) - 1)));
+    }
+
+    /**
+     * Copies len bytes from pos
+     *
+     * @param pos
+     * @param dst
+     * @param off
+     * @param len
+     * @throws IOException if the bytes cross two windows and reading fails
+     */
+    void get(long pos, byte[] dst, int off, int len) throws IOException {
+        int window = (int) (pos >>> windowShift);
+        int start = (int) (pos & ((1 << windowShift) - 1));
+        if (len == 0) {
+            return;
+        }
+        if (window == (int) ((pos + len - 1) >>> windowShift)) {
+            ByteBuffer source = windows[window].duplicate();
+            source.position(start);
+            source.get(dst, off, len);
+            return;
+        }
+        ByteBuffer target = ByteBuffer.wrap(dst, off, len);
+        while (target.hasRemaining()) {
+            if (channel.read(target, pos + target.position() - off) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Closes the channel; the mapping itself is released when the buffers are
+     * collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
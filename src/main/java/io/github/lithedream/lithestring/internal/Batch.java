@@ -0,0 +1,129 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Runs a batch of independent items in parallel, in chunks of about the same
+ * total size.
+ *
+ * <p>
+ * The calling thread processes chunks too, and every worker claims chunks from
+ * a shared counter until none is left: a chunk is never waiting for a worker
+ * that the executor has not started, so a busy or nested executor only costs
+ * parallelism, never progress.
+ * </p>
+ */
+final class Batch {
+
+    // below this total size per worker, a batch runs on the calling thread
+    private static final int MIN_CHUNK_WEIGHT = 64 * 1024;
+    // fixed cost of an item, added to its size
+    private static final int ITEM_WEIGHT = 16;
+
+    /**
+     * Work on the items from {@code from} (inclusive) to {@code to} (exclusive)
+     */
+    interface Chunk {
+        void process(int from, int to);
+    }
+
+    private Batch() {
+    }
+
+    /**
+     * Processes the items, splitting them into chunks whose weights sum to about
+     * the same value
+     *
+     * @param n        number of items
+     * @param weight   weight of each item, about its size in bytes
+     * @param executor runs the extra workers
+     * @param chunk    processes a chunk; the chunks never overlap
+     * @throws RuntimeException the first exception thrown by a chunk
+     */
+    static void run(int n, IntUnaryOperator weight, Executor executor, final Chunk chunk) {
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += weight.applyAsInt(i) + ITEM_WEIGHT;
+        }
+        if (parallelism <= 1 || total < 2L * MIN_CHUNK_WEIGHT) {
+            chunk.process(0, n);
+            return;
+        }
+        // a few chunks per worker, so that uneven items even out
+        long target = Math.max(MIN_CHUNK_WEIGHT, total / (4L * parallelism));
+        final int[] bounds = new int[n + 1];
+        int nChunks = 0;
+        long acc = 0;
+        for (int i = 0; i < n; i++) {
+            acc += weight.applyAsInt(i) + ITEM_WEIGHT;
+            if (acc >= target) {
+                bounds[++nChunks] = i + 1;
+                acc = 0;
+            }
+        }
+        if (bounds[nChunks] < n) {
+            bounds[++nChunks] = n;
+        }
+
+        final int chunks = nChunks;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(chunks);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int c;
+                while ((c = next.getAndIncrement()) < chunks) {
+                    try {
+                        // after a failure the remaining chunks are only counted down
+                        if (failure.get() == null) {
+                            chunk.process(bounds[c], bounds[c + 1]);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        int extraWorkers = Math.min(parallelism, nChunks) - 1;
+        for (int w = 0; w < extraWorkers; w++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+}
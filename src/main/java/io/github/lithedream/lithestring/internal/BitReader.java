@@ -1,143 +1,102 @@
 package io.github.lithedream.lithestring.internal;
 
+/**
+ * Reads bits MSB-first from a byte array, through a 64-bit buffer refilled a
+ * byte at a time. Bits past the end of the array read as zero.
+ */
 class BitReader {
-    private static final byte START = 7;
-    private byte curpos = START;
-    private byte[] bytes;
-    private int bytePos = 0;
+    private final byte[] bytes;
+    private final int end;
+    private int next;
+    private long buffer = 0;
+    private int bufferBits = 0;
 
     public BitReader(byte[] b) {
-        bytes = b;
+        this(b, 0, b.length);
     }
 
-    public byte read() {
-        if (curpos == START) {
-            if (bytePos >= bytes.length) {
-                return 0; // force return 0 because the stream ends
-            }
-            byte toRet = bytes[bytePos];
-            bytePos++;
-            return toRet;
-        } else {
-            byte toRet = 0;
-            for (int bit = 8; bit-- > 0;) {
-                if (bytePos >= bytes.length) {
-                    return 0; // force return 0 because the stream ends
-                }
-                if (Utils.getNBitValue(bytes[bytePos], curpos)) {
-                    toRet |= 1 << bit;
-                } else {
-                    toRet &= ~(1 << bit);
-                }
-                if (curpos == 0) {
-                    bytePos++;
-                    curpos = START;
-                } else {
-                    curpos--;
-                }
-            }
-            return toRet;
-
-        }
+    public BitReader(byte[] b, int offset, int length) {
+        bytes = b;
+        next = offset;
+        end = offset + length;
     }
 
-    public byte read(int numberOfBits) {
-        byte toRet = 0;
-        for (int bit = numberOfBits; bit-- > 0;) {
-            if (bytePos >= bytes.length) {
-                return 0; // force return 0 because the stream ends
-            }
-            if (Utils.getNBitValue(bytes[bytePos], curpos)) {
-                toRet |= 1 << bit;
-            } else {
-                toRet &= ~(1 << bit);
-            }
-            if (curpos == 0) {
-                bytePos++;
-                curpos = START;
-            } else {
-                curpos--;
-            }
+    private void refill() {
+        while (bufferBits <= 56 && next < end) {
+            buffer |= (bytes[next++] & 0xFFL) << (56 - bufferBits);
+            bufferBits += 8;
         }
-        return toRet;
     }
 
-    public String readAsString(int numberOfBits) {
-        StringBuilder sb = new StringBuilder();
-        for (int bit = numberOfBits; bit-- > 0;) {
-            if (bytePos >= bytes.length) {
-                return null; // force return null because the stream ends
-            }
-            if (Utils.getNBitValue(bytes[bytePos], curpos)) {
-                sb.append('1');
-            } else {
-                sb.append('0');
-            }
-            if (curpos == 0) {
-                bytePos++;
-                curpos = START;
-            } else {
-                curpos--;
-            }
+    /**
+     * Returns the next {@code n} bits without consuming them
+     *
+     * @param n number of bits, between 1 and 32
+     * @return the bits, right aligned
+     */
+    public int peekBits(int n) {
+        if (bufferBits < n) {
+            refill();
         }
-        return sb.toString();
+        return (int) (buffer >>> (64 - n));
     }
 
-    public char read01Char() {
-        if (bytePos >= bytes.length) {
-            return 0; // force return 0 because the stream ends
-        }
-        char c;
-        if (Utils.getNBitValue(bytes[bytePos], curpos)) {
-            c = '1';
-        } else {
-            c = '0';
-        }
-        if (curpos == 0) {
-            bytePos++;
-            curpos = START;
-        } else {
-            curpos--;
+    /**
+     * Consumes {@code n} bits
+     *
+     * @param n number of bits
+     */
+    public void skip(int n) {
+        while (n > 0) {
+            int k = Math.min(n, 32);
+            if (bufferBits < k) {
+                refill();
+            }
+            buffer <<= k;
+            bufferBits -= k;
+            n -= k;
         }
-        return c;
     }
 
-    public boolean isClosed() {
-        return bytePos >= bytes.length;
+    /**
+     * Reads the next {@code n} bits
+     *
+     * @param n number of bits, between 1 and 32
+     * @return the bits, right aligned
+     */
+    public int readBits(int n) {
+        int value = peekBits(n);
+        buffer <<= n;
+        bufferBits -= n;
+        return value;
     }
 
-    public void advance(int n) {
-        for (int i = 0; i < n; i++) {
-            if (curpos == 0) {
-                bytePos++;
-                curpos = START;
-            } else {
-                curpos--;
-            }
+    /**
+     * Like readBits(int), for codes longer than 32 bits
+     *
+     * @param n number of bits, between 0 and 64
+     * @return the bits, right aligned
+     */
+    public long readLong(int n) {
+        if (n > 32) {
+            long high = readBits(n - 32) & 0xFFFFFFFFL;
+            return (high << 32) | (readBits(32) & 0xFFFFFFFFL);
         }
+        return n == 0 ? 0 : readBits(n) & 0xFFFFFFFFL;
     }
 
-    public boolean peek01(String s) {
-        int bytePosCopy = bytePos;
-        byte curPosCopy = curpos;
+    public byte readByte() {
+        return (byte) readBits(8);
+    }
 
-        for (int i = 0; i < s.length(); i++) {
-            if (bytePosCopy >= bytes.length) {
-                return false;
-            }
-            boolean bitValue = Utils.getNBitValue(bytes[bytePosCopy], curPosCopy);
-            boolean iBitIsSet = s.charAt(i) == ('1');
-            if (bitValue != iBitIsSet) {
-                return false;
-            }
+    /**
+     * @return how many bits are left before the end of the array
+     */
+    public long bitsLeft() {
+        return Math.max(0, (long) (end - next) * 8 + bufferBits);
+    }
 
-            if (curPosCopy == 0) {
-                bytePosCopy++;
-                curPosCopy = START;
-            } else {
-                curPosCopy--;
-            }
-        }
-        return true;
+    public boolean isClosed() {
+        return next >= end && bufferBits <= 0;
     }
-}
\ No newline at end of file
+}
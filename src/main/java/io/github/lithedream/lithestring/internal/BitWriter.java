@@ -1,78 +1,96 @@
 package io.github.lithedream.lithestring.internal;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
+/**
+ * Writes bits MSB-first into a byte array, through a 64-bit accumulator that
+ * takes whole codes at a time.
+ */
 class BitWriter {
-    private static final int START = 7;
-    private final ByteArrayOutputStream b = new ByteArrayOutputStream();
-    private byte current = 0;
-    private int curpos = START;
+    private byte[] bytes;
+    private int pos = 0;
+    private long acc = 0;
+    private int accBits = 0;
 
-    private boolean closed = false;
-
-    public BitWriter() {
+    /**
+     * @param capacity expected size in bytes of the output (grows if exceeded)
+     */
+    public BitWriter(int capacity) {
+        bytes = new byte[Math.max(capacity, 1)];
     }
 
-    public void write(boolean bit) {
-        if (bit) {
-            current |= 1 << curpos;
-        } else {
-            current &= ~(1 << curpos);
-        }
-        if (curpos == 0) {
-            b.write(current);
-            current = 0;
-            curpos = START;
-        } else {
-            curpos--;
+    /**
+     * Writes the last {@code length} bits of {@code code}, most significant first
+     *
+     * @param code
+     * @param length number of bits, between 0 and 32
+     */
+    public void write(int code, int length) {
+        acc = (acc << length) | (code & ((1L << length) - 1));
+        accBits += length;
+        if (accBits >= 8) {
+            flush();
         }
     }
 
-    public void write01(String binaryString) {
-        char[] chars = binaryString.toCharArray();
-        for (char c : chars) {
-            write(c == '1');
+    /**
+     * Like write(int, int), for codes longer than 32 bits
+     *
+     * @param code
+     * @param length number of bits, between 0 and 64
+     */
+    public void writeLong(long code, int length) {
+        if (length > 32) {
+            write((int) (code >>> 32), length - 32);
+            length = 32;
         }
+        write((int) code, length);
+    }
+
+    public void write(boolean bit) {
+        write(bit ? 1 : 0, 1);
     }
 
     public void write(byte value) {
-        for (byte bit = 8; bit-- > 0;) {
-            write(Utils.getNBitValue(value, bit));
-        }
+        write(value, 8);
     }
 
-    public void writeLast5Bits(byte value) {
-        for (byte bit = 5; bit-- > 0;) {
-            write(Utils.getNBitValue(value, bit));
+    private void flush() {
+        if (pos + (accBits >>> 3) > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, pos + 5));
+        }
+        while (accBits >= 8) {
+            accBits -= 8;
+            bytes[pos++] = (byte) (acc >>> accBits);
         }
     }
 
-    public void close() {
-        if (!closed) {
-            closed = true;
-            if (curpos != START) {
-                b.write(current);
-            }
-        }
+    /**
+     * @return how many bits have been written
+     */
+    public long bitLength() {
+        return ((long) pos << 3) + accBits;
     }
 
+    /**
+     * @return how many bits are left unused in the last byte
+     */
     public int getSpareBits() {
-        if (curpos == START) {
-            return 0;
-        }
-        return curpos + 1;
+        return accBits == 0 ? 0 : 8 - accBits;
     }
 
+    /**
+     * Returns the written bytes, padding the last one with zeros
+     *
+     * @return the written bytes
+     */
     public byte[] toByteArray() {
-        if (closed || curpos == START) {
-            return b.toByteArray();
-        } else {
-            byte[] bytes = b.toByteArray();
-            byte[] bytes2 = new byte[bytes.length + 1];
-            System.arraycopy(bytes, 0, bytes2, 0, bytes.length);
-            bytes2[bytes.length] = current;
-            return bytes2;
+        int length = pos + (accBits > 0 ? 1 : 0);
+        byte[] out = length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        if (accBits > 0) {
+            out[pos] = (byte) (acc << (8 - accBits));
         }
+        return out;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,344 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Block encoding for large strings, read by random access: the UTF-8 input is
+ * cut into blocks on code point boundaries, and each block is compressed on its
+ * own with {@link LitheStringAlgorithm#zipUTF8(byte[])}.
+ *
+ * <p>
+ * Format: <code>10111010</code>, the number of blocks as a varint, then for
+ * each block three big-endian ints, the end of its compressed bytes, of its
+ * UTF-8 bytes and of its chars, counted from the start of the first block;
+ * then the compressed blocks. Reading a char or a substring decodes only the
+ * blocks holding it.
+ * </p>
+ */
+final class BlockCodec {
+
+    static final int HEADER = 0b10111010;
+    static final int DEFAULT_BLOCK_SIZE = 32 * 1024;
+    static final int MIN_BLOCK_SIZE = 1024;
+    static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * @param input
+     * @param blockSize UTF-8 bytes per block, the last one excepted; a block
+     *                  ending inside a code point ends before it
+     * @return the encoded bytes
+     */
+    static byte[] zip(String input, int blockSize) {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+                    "Block size " + blockSize + " not in [" + MIN_BLOCK_SIZE + ", " + MAX_BLOCK_SIZE + "]");
+        }
+        byte[] utf8 = Utf8Strings.utf8(input);
+        int maxBlocks = (utf8.length + blockSize - 4) / (blockSize - 3) + 1;
+        byte[][] blocks = new byte[maxBlocks][];
+        int[] ends = new int[3 * maxBlocks];
+        int count = 0;
+        int compressedEnd = 0;
+        int charEnd = 0;
+        for (int start = 0; start < utf8.length;) {
+            int end = Math.min(utf8.length, start + blockSize);
+            while (end < utf8.length && (utf8[end] & 0xC0) == 0x80) {
+                end--;
+            }
+            byte[] block = Arrays.copyOfRange(utf8, start, end);
+            blocks[count] = LitheStringAlgorithm.zipUTF8(block);
+            compressedEnd += blocks[count].length;
+            charEnd += Utils.countChars(utf8, start, end - start);
+            ends[3 * count] = compressedEnd;
+            ends[3 * count + 1] = end;
+            ends[3 * count + 2] = charEnd;
+            count++;
+            start = end;
+        }
+        int dataStart = 1 + Utils.varintLength(count) + 12 * count;
+        byte[] bytes = new byte[dataStart + compressedEnd];
+        bytes[0] = (byte) HEADER;
+        int pos = Utils.writeVarint(bytes, 1, count);
+        for (int i = 0; i < 3 * count; i++) {
+            pos = writeInt(bytes, pos, ends[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(blocks[i], 0, bytes, pos, blocks[i].length);
+            pos += blocks[i].length;
+        }
+        return bytes;
+    }
+
+    private static int writeInt(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+        return pos + 4;
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xFF) << 24 | (bytes[pos + 1] & 0xFF) << 16 | (bytes[pos + 2] & 0xFF) << 8
+                | (bytes[pos + 3] & 0xFF);
+    }
+
+    /**
+     * @param content
+     * @param offset
+     * @param length
+     * @return true if content[offset, offset + length) is block encoded
+     */
+    static boolean isBlocks(byte[] content, int offset, int length) {
+        return length > 0 && (content[offset] & 0xFF) == HEADER;
+    }
+
+    /**
+     * The block index of encoded content, checked when read: the spans of each
+     * block must be consistent with each other and with its compressed length
+     */
+    static final class Index {
+        private final byte[] content;
+        private final int blocks;
+        private final int indexStart;
+        private final int dataStart;
+
+        /**
+         * @param content block encoded content
+         * @param offset
+         * @param length
+         * @throws IllegalArgumentException if the index is not consistent
+         */
+        Index(byte[] content, int offset, int length) {
+            int end = offset + length;
+            int count = Utils.readVarint(content, offset + 1, end);
+            this.content = content;
+            this.blocks = count;
+            this.indexStart = offset + 1 + Utils.varintLength(count);
+            if (count > (end - indexStart) / 12) {
+                throw new IllegalArgumentException("Corrupt block index");
+            }
+            this.dataStart = indexStart + 12 * count;
+            // each block holds what its compressed bytes can expand to, 1 to 3
+            // UTF-8 bytes per char (4 for a surrogate pair), so nothing sized
+            // by the index is larger than the content can fill
+            for (int i = 0; i < count; i++) {
+                int compressed = compressedEnd(i) - compressedEnd(i - 1);
+                int utf8 = utf8End(i) - utf8End(i - 1);
+                int chars = charEnd(i) - charEnd(i - 1);
+                if (compressed < 0 || chars > utf8 || utf8 > 3L * chars
+                        || !DeflateContext.isPlausible(utf8, compressed)) {
+                    throw new IllegalArgumentException("Corrupt block index");
+                }
+            }
+            if (compressedEnd(count - 1) != end - dataStart) {
+                throw new IllegalArgumentException("Corrupt block index");
+            }
+        }
+
+        int blocks() {
+            return blocks;
+        }
+
+        int compressedEnd(int block) {
+            return block < 0 ? 0 : readInt(content, indexStart + 12 * block);
+        }
+
+        int utf8End(int block) {
+            return block < 0 ? 0 : readInt(content, indexStart + 12 * block + 4);
+        }
+
+        int charEnd(int block) {
+            return block < 0 ? 0 : readInt(content, indexStart + 12 * block + 8);
+        }
+
+        int utf8Length() {
+            return utf8End(blocks - 1);
+        }
+
+        int length() {
+            return charEnd(blocks - 1);
+        }
+
+        /**
+         * @param index a char index, from 0 to length() - 1
+         * @return the block holding it
+         */
+        int blockOf(int index) {
+            int low = 0;
+            int high = blocks - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (charEnd(mid) <= index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Decodes a block, checking its UTF-8 length
+         *
+         * @param block
+         * @param sink
+         * @return the result of the sink
+         */
+        <T> T unzip(int block, final Utf8Sink<T> sink) {
+            int start = dataStart + compressedEnd(block - 1);
+            int length = compressedEnd(block) - compressedEnd(block - 1);
+            if (isBlocks(content, start, length) || LengthPrefix.isWrapped(content, start, length)) {
+                throw new IllegalArgumentException("Nested block header");
+            }
+            final int utf8Length = utf8End(block) - utf8End(block - 1);
+            return LitheStringAlgorithm.unzip(content, start, length, new Utf8Sink<T>() {
+                @Override
+                public T accept(byte[] utf8, int from, int count) {
+                    if (count != utf8Length) {
+                        throw new IllegalArgumentException("Corrupt block index");
+                    }
+                    return sink.accept(utf8, from, count);
+                }
+            });
+        }
+
+        /**
+         * @param block
+         * @return the chars of the block
+         */
+        String block(int block) {
+            String s = unzip(block, Utf8Sink.STRING);
+            if (s.length() != charEnd(block) - charEnd(block - 1)) {
+                throw new IllegalArgumentException("Corrupt block index");
+            }
+            return s;
+        }
+
+        /**
+         * Decodes blocks into dst, at their UTF-8 offsets
+         *
+         * @param from first block
+         * @param to   end block, exclusive
+         * @param dst  of utf8Length() bytes
+         */
+        void unzip(int from, int to, final byte[] dst) {
+            for (int i = from; i < to; i++) {
+                final int at = utf8End(i - 1);
+                unzip(i, new Utf8Sink<Void>() {
+                    @Override
+                    public Void accept(byte[] utf8, int start, int count) {
+                        System.arraycopy(utf8, start, dst, at, count);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        /**
+         * @param from
+         * @param to
+         * @return the chars [from, to), decoding only the blocks holding them
+         */
+        String substring(int from, int to) {
+            if (from < 0 || from > to || to > length()) {
+                throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length "
+                        + length());
+            }
+            if (from == to) {
+                return "";
+            }
+            int first = blockOf(from);
+            int last = blockOf(to - 1);
+            if (first == last) {
+                int start = charEnd(first - 1);
+                return block(first).substring(from - start, to - start);
+            }
+            StringBuilder sb = new StringBuilder(to - from);
+            for (int i = first; i <= last; i++) {
+                int start = charEnd(i - 1);
+                String s = block(i);
+                sb.append(s, Math.max(from - start, 0), Math.min(to - start, s.length()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Decodes all the blocks, in parallel on the executor
+     *
+     * @param content  block encoded content
+     * @param offset
+     * @param length
+     * @param executor runs the extra workers, or null to decode on the calling
+     *                 thread
+     * @param sink     receives the UTF-8 bytes
+     * @return the result of the sink
+     */
+    static <T> T unzip(byte[] content, int offset, int length, Executor executor, Utf8Sink<T> sink) {
+        final Index index = new Index(content, offset, length);
+        final byte[] utf8 = new byte[index.utf8Length()];
+        if (executor == null) {
+            index.unzip(0, index.blocks(), utf8);
+        } else {
+            Batch.run(index.blocks(), new IntUnaryOperator() {
+                @Override
+                public int applyAsInt(int block) {
+                    return index.utf8End(block) - index.utf8End(block - 1);
+                }
+            }, executor, new Batch.Chunk() {
+                @Override
+                public void process(int from, int to) {
+                    index.unzip(from, to, utf8);
+                }
+            });
+        }
+        return sink.accept(utf8, 0, utf8.length);
+    }
+
+    /**
+     * CharSequence over block encoded content, keeping the last block it
+     * decoded. Not safe for concurrent use.
+     */
+    static final class View implements CharSequence {
+        private final Index index;
+        private int cachedBlock = -1;
+        private String cached;
+
+        View(byte[] content, int offset, int length) {
+            this.index = new Index(content, offset, length);
+        }
+
+        @Override
+        public int length() {
+            return index.length();
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= index.length()) {
+                throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + index.length());
+            }
+            int block = index.blockOf(i);
+            if (block != cachedBlock) {
+                cached = index.block(block);
+                cachedBlock = block;
+            }
+            return cached.charAt(i - index.charEnd(block - 1));
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return index.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return index.substring(0, index.length());
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reusable native zlib state and scratch memory for the deflate-based types,
+ * and scratch chars for decoding into caller buffers.
+ *
+ * <p>
+ * Contexts are kept in a small bounded pool of slots claimed with atomic
+ * swaps, so that no lock is held and no state is bound to a thread (virtual
+ * threads come and go too fast for thread-locals to pay off). When the pool is
+ * empty a new context is created; when it is full a released context is ended
+ * immediately instead of being left to the cleaner.
+ * </p>
+ */
+final class DeflateContext {
+
+    private static final int POOL_SIZE = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+    private static final AtomicReferenceArray<DeflateContext> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private static final int BUFFER_SIZE = 1024;
+    // chunks of direct buffers fed to zlib
+    private static final int INPUT_SIZE = 8 * 1024;
+    // larger buffers are not kept in the pool
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    // deflate cannot expand its input more than about 1032 times
+    private static final int MAX_EXPANSION = 1032;
+
+    private Deflater deflater;
+    private Inflater inflater;
+    final CRC32 crc = new CRC32();
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private char[] chars = new char[BUFFER_SIZE];
+    private byte[] input;
+
+    private DeflateContext() {
+    }
+
+    /**
+     * @return a context taken from the pool, or a new one
+     */
+    static DeflateContext acquire() {
+        int start = startSlot();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (start + i) % POOL_SIZE;
+            if (POOL.get(slot) != null) {
+                DeflateContext context = POOL.getAndSet(slot, null);
+                if (context != null) {
+                    return context;
+                }
+            }
+        }
+        return new DeflateContext();
+    }
+
+    /**
+     * Gives the context back to the pool, or ends it if the pool is full
+     *
+     * @param context
+     */
+    static void release(DeflateContext context) {
+        if (context.buffer.length > MAX_POOLED_BUFFER_SIZE) {
+            context.buffer = new byte[BUFFER_SIZE];
+        }
+        if (context.chars.length > MAX_POOLED_BUFFER_SIZE) {
+            context.chars = new char[BUFFER_SIZE];
+        }
+        int start = startSlot();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (start + i) % POOL_SIZE;
+            if (POOL.get(slot) == null && POOL.compareAndSet(slot, null, context)) {
+                return;
+            }
+        }
+        context.end();
+    }
+
+    // spreads concurrent threads over different slots
+    private static int startSlot() {
+        int h = System.identityHashCode(Thread.currentThread());
+        return ((h ^ (h >>> 16)) & 0x7FFFFFFF) % POOL_SIZE;
+    }
+
+    /**
+     * Discards a context whose zlib state may be inconsistent
+     *
+     * @param context
+     */
+    static void discard(DeflateContext context) {
+        context.end();
+    }
+
+    /**
+     * Raw deflate (no zlib wrapper, default level) of the input into the scratch
+     * buffer
+     *
+     * @param input
+     * @param off
+     * @param len
+     * @return the number of bytes written at the start of {@link #buffer()}
+     */
+    int deflate(byte[] input, int off, int len) {
+        return deflate(input, off, len, null);
+    }
+
+    /**
+     * Like {@link #deflate(byte[], int, int)}, with a preset dictionary
+     *
+     * @param input
+     * @param off
+     * @param len
+     * @param dictionary preset dictionary, or null
+     * @return the number of bytes written at the start of {@link #buffer()}
+     */
+    int deflate(byte[] input, int off, int len, byte[] dictionary) {
+        Deflater deflater = deflater();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(input, off, len);
+        deflater.finish();
+        byte[] out = buffer(len + (len >>> 6) + 16);
+        int pos = 0;
+        while (!deflater.finished()) {
+            if (pos == out.length) {
+                out = grow();
+            }
+            pos += deflater.deflate(out, pos, out.length - pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Raw deflate of the bytes remaining in src, without moving its position.
+     * Heap buffers are read in place, direct ones in chunks copied to scratch
+     * memory.
+     *
+     * @param src
+     * @param out   destination with room for limit + 1 bytes at off, or null for
+     *              the scratch buffer
+     * @param off
+     * @param limit most output bytes wanted
+     * @return the number of bytes written, or -1 if the stream takes more than
+     *         limit bytes
+     */
+    int deflate(ByteBuffer src, byte[] out, int off, int limit) {
+        Deflater deflater = deflater();
+        ByteBuffer rest = null;
+        if (src.hasArray()) {
+            deflater.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            deflater.finish();
+        } else {
+            rest = src.duplicate();
+            if (!rest.hasRemaining()) {
+                deflater.finish();
+            }
+        }
+        if (out == null) {
+            out = buffer(limit + 1);
+            off = 0;
+        }
+        int pos = 0;
+        while (!deflater.finished()) {
+            if (pos > limit) {
+                return -1;
+            }
+            if (rest != null && rest.hasRemaining() && deflater.needsInput()) {
+                int n = next(rest);
+                deflater.setInput(input, 0, n);
+                if (!rest.hasRemaining()) {
+                    deflater.finish();
+                }
+            }
+            pos += deflater.deflate(out, off + pos, limit + 1 - pos);
+        }
+        return pos > limit ? -1 : pos;
+    }
+
+    /**
+     * Inflates one raw deflate stream into the scratch buffer
+     *
+     * @param content
+     * @param off
+     * @param len
+     * @param sizeHint expected output size, used to size the buffer
+     * @return the number of bytes written at the start of {@link #buffer()}
+     * @throws DataFormatException      if the stream is corrupt
+     * @throws IllegalArgumentException if the stream is truncated
+     */
+    int inflate(byte[] content, int off, int len, int sizeHint) throws DataFormatException {
+        return inflate(content, off, len, sizeHint, null);
+    }
+
+    /**
+     * Like {@link #inflate(byte[], int, int, int)}, with the preset dictionary
+     * the stream was deflated with
+     *
+     * @param content
+     * @param off
+     * @param len
+     * @param sizeHint   expected output size, used to size the buffer
+     * @param dictionary preset dictionary, or null
+     * @return the number of bytes written at the start of {@link #buffer()}
+     * @throws DataFormatException      if the stream is corrupt
+     * @throws IllegalArgumentException if the stream is truncated
+     */
+    int inflate(byte[] content, int off, int len, int sizeHint, byte[] dictionary) throws DataFormatException {
+        Inflater inflater = inflater();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(content, off, len);
+        byte[] out = buffer(sizeHint + 1);
+        int pos = 0;
+        while (!inflater.finished()) {
+            if (pos == out.length) {
+                out = grow();
+            }
+            int read = inflater.inflate(out, pos, out.length - pos);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IllegalArgumentException("Unexpected end of deflate stream");
+            }
+            pos += read;
+        }
+        return pos;
+    }
+
+    /**
+     * Inflates one raw deflate stream, the bytes remaining in src, into dst
+     * through the scratch buffer, without moving the position of src. Heap
+     * buffers are read in place, direct ones in chunks copied to scratch
+     * memory.
+     *
+     * @param src
+     * @param dst   with room for limit bytes
+     * @param limit most output bytes expected
+     * @return the number of bytes written to dst
+     * @throws DataFormatException      if the stream is corrupt
+     * @throws IllegalArgumentException if the stream is truncated, followed by
+     *                                  other bytes or longer than limit
+     */
+    int inflate(ByteBuffer src, ByteBuffer dst, int limit) throws DataFormatException {
+        Inflater inflater = inflater();
+        ByteBuffer rest = null;
+        if (src.hasArray()) {
+            inflater.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        } else {
+            rest = src.duplicate();
+        }
+        byte[] out = buffer(Math.min(limit, MAX_POOLED_BUFFER_SIZE) + 1);
+        int total = 0;
+        while (!inflater.finished()) {
+            if (rest != null && rest.hasRemaining() && inflater.needsInput()) {
+                int n = next(rest);
+                inflater.setInput(input, 0, n);
+            }
+            int read = inflater.inflate(out, 0, out.length);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IllegalArgumentException("Unexpected end of deflate stream");
+            }
+            if (read > limit - total) {
+                throw new IllegalArgumentException("Deflate stream longer than expected");
+            }
+            dst.put(out, 0, read);
+            total += read;
+        }
+        if (inflater.getRemaining() != 0 || rest != null && rest.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected bytes after deflate stream");
+        }
+        return total;
+    }
+
+    /**
+     * Inflates the start of one raw deflate stream into the scratch buffer
+     *
+     * @param content
+     * @param off
+     * @param len
+     * @param limit output bytes wanted
+     * @return the number of bytes written at the start of {@link #buffer()}:
+     *         limit, or fewer if the stream ends before
+     * @throws DataFormatException      if the stream is corrupt
+     * @throws IllegalArgumentException if the stream is truncated
+     */
+    int inflatePrefix(byte[] content, int off, int len, int limit) throws DataFormatException {
+        Inflater inflater = inflater();
+        inflater.setInput(content, off, len);
+        byte[] out = buffer(limit);
+        int pos = 0;
+        while (pos < limit && !inflater.finished()) {
+            int read = inflater.inflate(out, pos, limit - pos);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IllegalArgumentException("Unexpected end of deflate stream");
+            }
+            pos += read;
+        }
+        return pos;
+    }
+
+    /**
+     * @param declared       output size declared by the encoded content
+     * @param deflatedLength size of the deflate stream
+     * @return the declared size if it is plausible for that stream, otherwise a
+     *         default size
+     */
+    static int sizeHint(int declared, int deflatedLength) {
+        return isPlausible(declared, deflatedLength) ? declared : BUFFER_SIZE;
+    }
+
+    /**
+     * @param declared       output size declared by the encoded content
+     * @param deflatedLength size of the deflate stream
+     * @return false if no deflate stream of that size can inflate to the
+     *         declared size
+     */
+    static boolean isPlausible(int declared, int deflatedLength) {
+        return declared >= 0 && declared / MAX_EXPANSION <= deflatedLength;
+    }
+
+    /**
+     * @return how many input bytes the last {@link #inflate} left unread
+     */
+    int remaining() {
+        return inflater.getRemaining();
+    }
+
+    /**
+     * @return the scratch buffer holding the last deflate/inflate output
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @param minLength
+     * @return a scratch char array of at least minLength chars, with undefined
+     *         content
+     */
+    char[] chars(int minLength) {
+        if (chars.length < minLength) {
+            chars = new char[Math.max(minLength, chars.length << 1)];
+        }
+        return chars;
+    }
+
+    /**
+     * Copies the next chunk of rest to the input scratch
+     *
+     * @param rest
+     * @return the number of bytes copied
+     */
+    private int next(ByteBuffer rest) {
+        if (input == null) {
+            input = new byte[INPUT_SIZE];
+        }
+        int n = Math.min(rest.remaining(), INPUT_SIZE);
+        rest.get(input, 0, n);
+        return n;
+    }
+
+    private Deflater deflater() {
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        } else {
+            deflater.reset();
+        }
+        return deflater;
+    }
+
+    private Inflater inflater() {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        } else {
+            inflater.reset();
+        }
+        return inflater;
+    }
+
+    /**
+     * @param minLength
+     * @return a scratch buffer of at least minLength bytes, with undefined
+     *         content
+     */
+    private byte[] buffer(int minLength) {
+        if (buffer.length < minLength) {
+            buffer = new byte[Math.max(minLength, buffer.length << 1)];
+        }
+        return buffer;
+    }
+
+    /**
+     * @return the scratch buffer doubled in size, keeping its content
+     */
+    private byte[] grow() {
+        buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        return buffer;
+    }
+
+    private void end() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a preset deflate dictionary from sample strings, choosing segments
+ * that cover the substrings found in the most samples.
+ *
+ * <p>
+ * The samples are split into one epoch per segment; in every epoch the window
+ * whose distinct {@value #DMER}-byte substrings appear in the most samples is
+ * picked (substrings of a single sample do not count), and the substrings it
+ * covers stop counting for the next epochs. The best segments go last, where
+ * deflate reaches them with the shortest distances.
+ * </p>
+ */
+final class DictionaryTrainer {
+
+    /**
+     * Deflate only looks back 32 KB
+     */
+    static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int DMER = 6;
+    private static final int SEGMENT = 48;
+
+    private DictionaryTrainer() {
+    }
+
+    /**
+     * @param samples UTF-8 samples
+     * @param size    maximum size of the dictionary, up to
+     *                {@link #MAX_DICTIONARY_SIZE}
+     * @return the dictionary, possibly shorter than size, or empty if the
+     *         samples share nothing
+     * @throws IllegalArgumentException if size is not valid
+     */
+    static byte[] train(List<byte[]> samples, int size) {
+        if (size <= 0 || size > MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException(
+                    "Dictionary size " + size + " not valid. Valid values are 1-" + MAX_DICTIONARY_SIZE);
+        }
+        // in how many samples every d-mer appears
+        Map<Long, Integer> frequencies = new HashMap<>();
+        long total = 0;
+        for (byte[] sample : samples) {
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i + DMER <= sample.length; i++) {
+                Long dmer = dmer(sample, i);
+                if (seen.add(dmer)) {
+                    Integer f = frequencies.get(dmer);
+                    frequencies.put(dmer, f == null ? 1 : f + 1);
+                }
+            }
+            total += sample.length;
+        }
+        // a substring of a single sample is not shared
+        frequencies.values().removeAll(Collections.singleton(1));
+
+        int nSegments = Math.max(1, size / SEGMENT);
+        long epochSize = Math.max(1, total / nSegments);
+        List<Segment> segments = new ArrayList<>();
+        int sampleIndex = 0;
+        while (sampleIndex < samples.size()) {
+            // the epoch is made of whole samples
+            int epochEnd = sampleIndex;
+            long epochBytes = 0;
+            while (epochEnd < samples.size() && (epochBytes == 0 || epochBytes < epochSize)) {
+                epochBytes += samples.get(epochEnd).length;
+                epochEnd++;
+            }
+            Segment best = null;
+            for (int s = sampleIndex; s < epochEnd; s++) {
+                Segment candidate = bestSegment(samples.get(s), frequencies);
+                if (candidate != null && (best == null || candidate.score > best.score)) {
+                    best = candidate;
+                }
+            }
+            if (best != null && best.score > 0) {
+                segments.add(best);
+                // substrings already in the dictionary are not worth adding again
+                for (int i = 0; i + DMER <= best.bytes.length; i++) {
+                    frequencies.remove(dmer(best.bytes, i));
+                }
+            }
+            sampleIndex = epochEnd;
+        }
+
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment o1, Segment o2) {
+                return Long.compare(o1.score, o2.score);
+            }
+        });
+        int length = 0;
+        for (Segment segment : segments) {
+            length += segment.bytes.length;
+        }
+        // keep the best segments if they do not all fit
+        int skip = 0;
+        while (length > size) {
+            length -= segments.get(skip++).bytes.length;
+        }
+        byte[] dictionary = new byte[length];
+        int pos = 0;
+        for (int i = skip; i < segments.size(); i++) {
+            byte[] bytes = segments.get(i).bytes;
+            System.arraycopy(bytes, 0, dictionary, pos, bytes.length);
+            pos += bytes.length;
+        }
+        return dictionary;
+    }
+
+    private static final class Segment {
+        final byte[] bytes;
+        final long score;
+
+        Segment(byte[] bytes, long score) {
+            this.bytes = bytes;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Slides a window of SEGMENT bytes over the sample, scoring every distinct
+     * d-mer in the window once
+     *
+     * @return the best window, or null if the sample is shorter than a d-mer
+     */
+    private static Segment bestSegment(byte[] sample, Map<Long, Integer> frequencies) {
+        int nDmers = sample.length - DMER + 1;
+        if (nDmers <= 0) {
+            return null;
+        }
+        int window = Math.min(SEGMENT - DMER + 1, nDmers);
+        Map<Long, Integer> active = new HashMap<>();
+        long score = 0;
+        long bestScore = -1;
+        int bestStart = 0;
+        for (int i = 0; i < nDmers; i++) {
+            Long in = dmer(sample, i);
+            Integer count = active.get(in);
+            if (count == null) {
+                Integer f = frequencies.get(in);
+                score += f == null ? 0 : f;
+                active.put(in, 1);
+            } else {
+                active.put(in, count + 1);
+            }
+            if (i >= window) {
+                Long out = dmer(sample, i - window);
+                int left = active.get(out) - 1;
+                if (left == 0) {
+                    active.remove(out);
+                    Integer f = frequencies.get(out);
+                    score -= f == null ? 0 : f;
+                } else {
+                    active.put(out, left);
+                }
+            }
+            if (i >= window - 1 && score > bestScore) {
+                bestScore = score;
+                bestStart = i - window + 1;
+            }
+        }
+        int end = Math.min(sample.length, bestStart + window + DMER - 1);
+        byte[] bytes = new byte[end - bestStart];
+        System.arraycopy(sample, bestStart, bytes, 0, bytes.length);
+        return new Segment(bytes, bestScore);
+    }
+
+    private static Long dmer(byte[] bytes, int pos) {
+        long value = 0;
+        for (int k = 0; k < DMER; k++) {
+            value = (value << 8) | (bytes[pos + k] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Read-only CharSequence over compressed content, decoding only as far as the
+ * chars asked for.
+ *
+ * <p>
+ * The UTF-8 bytes, produced by {@link Utf8Prefix}, are walked once, recording a
+ * checkpoint every {@link #STEP} chars, so that {@link #charAt(int)} resumes
+ * from the nearest one instead of the start. Malformed UTF-8 falls back to the
+ * decoded String. The length is read from a length header if there is one.
+ * </p>
+ *
+ * <p>
+ * Not safe for concurrent use.
+ * </p>
+ */
+final class LazyCharSequence implements CharSequence {
+
+    static final int STEP = 64;
+
+    private final Utf8Prefix utf8;
+
+    // checkpoint k: offset from utf8.start of the code point holding char
+    // k * STEP, shifted left by one, plus 1 if that char is the low half of a pair
+    private long[] checkpoints = new long[8];
+    private int scannedChars;
+    private int scannedBytes;
+
+    // set if the bytes are not well-formed UTF-8
+    private String fallback;
+    private final char[] single = new char[1];
+
+    LazyCharSequence(byte[] content, int offset, int length) {
+        this.utf8 = new Utf8Prefix(content, offset, length);
+        this.scannedBytes = utf8.start;
+    }
+
+    private void checkpoint(int charIndex, int bytePos, int low) {
+        int k = charIndex / STEP;
+        if (k == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, k * 2);
+        }
+        checkpoints[k] = (long) (bytePos - utf8.start) << 1 | low;
+    }
+
+    // walks the bytes until char index is covered or they end; false if the
+    // content is malformed
+    private boolean scanTo(int index) {
+        while (scannedChars <= index && fallback == null) {
+            int i = scannedBytes;
+            if (i == utf8.end) {
+                if (!utf8.extend()) {
+                    return true;
+                }
+                continue;
+            }
+            byte[] bytes = utf8.bytes;
+            int b = bytes[i];
+            if (b >= 0) {
+                if (scannedChars % STEP == 0) {
+                    checkpoint(scannedChars, i, 0);
+                }
+                scannedChars++;
+                scannedBytes = i + 1;
+                continue;
+            }
+            int cp = Utils.codePoint(bytes, i, utf8.end);
+            if (cp < 0) {
+                if (utf8.end - i < 4 && utf8.extend()) {
+                    continue;
+                }
+                fallback = utf8.decode();
+                return false;
+            }
+            if (scannedChars % STEP == 0) {
+                checkpoint(scannedChars, i, 0);
+            }
+            if (cp >= 0x10000) {
+                if ((scannedChars + 1) % STEP == 0) {
+                    checkpoint(scannedChars + 1, i, 1);
+                }
+                scannedChars += 2;
+                scannedBytes = i + 4;
+            } else {
+                scannedChars++;
+                scannedBytes = i + (cp >= 0x800 ? 3 : 2);
+            }
+        }
+        return fallback == null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || (scanTo(index) && index >= scannedChars)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds");
+        }
+    }
+
+    @Override
+    public int length() {
+        if (utf8.utf16Length >= 0) {
+            return utf8.utf16Length;
+        }
+        if (!scanTo(Integer.MAX_VALUE - 1)) {
+            return fallback.length();
+        }
+        return scannedChars;
+    }
+
+    @Override
+    public char charAt(int index) {
+        checkIndex(index);
+        if (fallback != null) {
+            return fallback.charAt(index);
+        }
+        copy(index, index + 1, single);
+        return single[0];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds");
+        }
+        if (end > 0) {
+            checkIndex(end - 1);
+        }
+        if (fallback != null) {
+            return fallback.substring(start, end);
+        }
+        char[] chars = new char[end - start];
+        copy(start, end, chars);
+        return new String(chars);
+    }
+
+    // chars [start, end), already scanned, into dst from 0
+    private void copy(int start, int end, char[] dst) {
+        if (start == end) {
+            return;
+        }
+        int k = start / STEP;
+        byte[] bytes = utf8.bytes;
+        int end8 = utf8.end;
+        int pos = utf8.start + (int) (checkpoints[k] >>> 1);
+        int c = k * STEP;
+        int d = 0;
+        if ((checkpoints[k] & 1) != 0) {
+            // char k * STEP is the low half of the pair at pos
+            if (c >= start) {
+                dst[d++] = Character.lowSurrogate(Utils.codePoint(bytes, pos, end8));
+            }
+            c++;
+            pos += 4;
+        }
+        while (c < end) {
+            int b = bytes[pos];
+            if (b >= 0) {
+                if (c >= start) {
+                    dst[d++] = (char) b;
+                }
+                c++;
+                pos++;
+                continue;
+            }
+            int cp = Utils.codePoint(bytes, pos, end8);
+            if (cp >= 0x10000) {
+                if (c >= start) {
+                    dst[d++] = Character.highSurrogate(cp);
+                }
+                if (c + 1 >= start && c + 1 < end) {
+                    dst[d++] = Character.lowSurrogate(cp);
+                }
+                c += 2;
+                pos += 4;
+            } else {
+                if (c >= start) {
+                    dst[d++] = (char) cp;
+                }
+                c++;
+                pos += cp >= 0x800 ? 3 : 2;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fallback != null ? fallback : utf8.decode();
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.lithedream.lithestring.internal;
+
+/**
+ * Opt-in wrapper recording the decoded lengths before any other encoding:
+ * <code>10111011</code>, the UTF-8 length as a varint, the UTF-16 length as a
+ * varint, then the content as {@link LitheStringAlgorithm#zip(String)} writes
+ * it. The lengths are read without decoding, once checked against each other
+ * and against the most the content can expand to; the UTF-8 one is checked
+ * again when decoding.
+ */
+final class LengthPrefix {
+
+    static final int HEADER = 0b10111011;
+
+    private LengthPrefix() {
+    }
+
+    /**
+     * @param inner       content of any other encoding
+     * @param utf8Length  decoded UTF-8 bytes
+     * @param utf16Length decoded chars
+     * @return the wrapped content
+     */
+    static byte[] wrap(byte[] inner, int utf8Length, int utf16Length) {
+        int headerLength = 1 + Utils.varintLength(utf8Length) + Utils.varintLength(utf16Length);
+        byte[] bytes = new byte[headerLength + inner.length];
+        bytes[0] = (byte) HEADER;
+        int pos = Utils.writeVarint(bytes, 1, utf8Length);
+        pos = Utils.writeVarint(bytes, pos, utf16Length);
+        System.arraycopy(inner, 0, bytes, pos, inner.length);
+        return bytes;
+    }
+
+    /**
+     * @param content
+     * @param offset
+     * @param length
+     * @return true if content[offset, offset + length) is wrapped
+     */
+    static boolean isWrapped(byte[] content, int offset, int length) {
+        return length > 0 && (content[offset] & 0xFF) == HEADER;
+    }
+
+    /**
+     * @param content wrapped content
+     * @param offset
+     * @param length
+     * @return the decoded UTF-8 length
+     * @throws IllegalArgumentException if the lengths are not consistent
+     */
+    static int utf8Length(byte[] content, int offset, int length) {
+        check(content, offset, length);
+        return readUtf8Length(content, offset, length);
+    }
+
+    /**
+     * @param content wrapped content
+     * @param offset
+     * @param length
+     * @return the decoded UTF-16 length
+     * @throws IllegalArgumentException if the lengths are not consistent
+     */
+    static int utf16Length(byte[] content, int offset, int length) {
+        check(content, offset, length);
+        return readUtf16Length(content, offset, length);
+    }
+
+    /**
+     * @param content wrapped content
+     * @param offset
+     * @param length
+     * @return the offset of the wrapped encoding
+     * @throws IllegalArgumentException if the lengths are not consistent
+     */
+    static int innerOffset(byte[] content, int offset, int length) {
+        check(content, offset, length);
+        return rawInnerOffset(content, offset, length);
+    }
+
+    /**
+     * Rejects lengths that no content of zipWithLength holds: a char takes 1 to
+     * 3 UTF-8 bytes (a surrogate pair 4 bytes for 2 chars), and no encoding
+     * expands more than deflate does
+     */
+    private static void check(byte[] content, int offset, int length) {
+        int utf8Length = readUtf8Length(content, offset, length);
+        int utf16Length = readUtf16Length(content, offset, length);
+        int innerLength = offset + length - rawInnerOffset(content, offset, length);
+        if (utf16Length > utf8Length || utf8Length > 3L * utf16Length
+                || !DeflateContext.isPlausible(utf8Length, innerLength)) {
+            throw new IllegalArgumentException("Corrupt length header");
+        }
+    }
+
+    private static int readUtf8Length(byte[] content, int offset, int length) {
+        return Utils.readVarint(content, offset + 1, offset + length);
+    }
+
+    private static int readUtf16Length(byte[] content, int offset, int length) {
+        int pos = offset + 1 + Utils.varintLength(readUtf8Length(content, offset, length));
+        return Utils.readVarint(content, pos, offset + length);
+    }
+
+    private static int rawInnerOffset(byte[] content, int offset, int length) {
+        return offset + 1 + Utils.varintLength(readUtf8Length(content, offset, length))
+                + Utils.varintLength(readUtf16Length(content, offset, length));
+    }
+
+    /**
+     * Decodes the wrapped encoding, checking its UTF-8 length
+     *
+     * @param content wrapped content
+     * @param offset
+     * @param length
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
+     */
+    static <T> T unzip(byte[] content, int offset, int length, final Utf8Sink<T> sink) {
+        int inner = innerOffset(content, offset, length);
+        final int utf8Length = readUtf8Length(content, offset, length);
+        if (isWrapped(content, inner, offset + length - inner)) {
+            throw new IllegalArgumentException("Nested length header");
+        }
+        return LitheStringAlgorithm.unzip(content, inner, offset + length - inner, new Utf8Sink<T>() {
+            @Override
+            public T accept(byte[] utf8, int from, int count) {
+                if (count != utf8Length) {
+                    throw new IllegalArgumentException("Corrupt length header");
+                }
+                return sink.accept(utf8, from, count);
+            }
+        });
+    }
+}
@@ -1,9 +1,24 @@
 package io.github.lithedream.lithestring.internal;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
 
 public class LitheStringAlgorithm {
 
+    /**
+     * Largest useful preset dictionary: deflate only looks back 32 KB
+     */
+    public static final int MAX_DICTIONARY_SIZE = DictionaryTrainer.MAX_DICTIONARY_SIZE;
+
     /**
      * Compresses the string using the best available encoding.
      * Returns {@code null} if {@code input} is null.
@@ -12,18 +27,20 @@ public class LitheStringAlgorithm {
      * @return the compressed byte array, or {@code null} if input is null
      */
     public static byte[] zip(String input) {
-        byte[] z0 = input != null ? input.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] z0 = input != null ? Utf8Strings.utf8(input) : null;
         return zipUTF8(z0);
     }
 
     /**
      * Compresses the string using a specific algorithm.
-     * Type values: 1 (type1), 2 (type2), 3 (type3/gzip).
+     * Type values: 1 (type1), 2 (type2), 3 (type3/gzip), 4 (type4/raw
+     * deflate), 6 (type6/built-in Huffman table). Type5 needs a dictionary, see
+     * {@link #zipWithDictionary(String, int)}.
      *
      * @param input the input string
-     * @param type  compression type (1, 2, or 3)
+     * @param type  compression type (1, 2, 3, 4 or 6)
      * @return the compressed byte array
-     * @throws IllegalArgumentException if {@code type} is not 1, 2, or 3
+     * @throws IllegalArgumentException if {@code type} is not 1, 2, 3, 4 or 6
      */
     public static byte[] zip(String input, int type) {
         switch (type) {
@@ -33,8 +50,12 @@ public class LitheStringAlgorithm {
                 return Type2Algorithm.z2(input);
             case 3:
                 return Type3Algorithm.z3(input);
+            case 4:
+                return Type4Algorithm.z4(input);
+            case 6:
+                return Type6Algorithm.z6(input);
             default:
-                throw new IllegalArgumentException("Type " + type + " not valid. Valid values are 1,2,3");
+                throw new IllegalArgumentException("Type " + type + " not valid. Valid values are 1,2,3,4,6");
         }
     }
 
@@ -46,6 +67,17 @@ public class LitheStringAlgorithm {
      * @return the compressed byte array, or {@code null} if input is null
      */
     public static byte[] zipUTF8(byte[] utf8Input) {
+        return zipUTF8(utf8Input, null);
+    }
+
+    /**
+     * Like {@link #zipUTF8(byte[])}, planning type2 with the given encoder
+     *
+     * @param utf8Input
+     * @param encoder   reused type2 encoder, or null for a new one
+     * @return the compressed byte array
+     */
+    static byte[] zipUTF8(byte[] utf8Input, Type2Encoder encoder) {
         if (utf8Input == null) {
             return null;
         }
@@ -53,29 +85,23 @@ public class LitheStringAlgorithm {
         if (len == 0) {
             return new byte[] {};
         }
-        if (len <= 64) {
-            byte[] z1 = Type1Algorithm.z1UTF8(utf8Input);
-            byte[] z2 = Type2Algorithm.z2UTF8(utf8Input);
-            return shortest(utf8Input, z1, z2);
-        }
         if (len <= 512) {
-            byte[] z1 = Type1Algorithm.z1UTF8(utf8Input);
-            byte[] z2 = Type2Algorithm.z2UTF8(utf8Input);
-            byte[] z3 = Type3Algorithm.z3UTF8(utf8Input);
-            return shortest(utf8Input, z1, z2, z3);
+            return smallest(utf8Input, len > 64, encoder != null ? encoder : new Type2Encoder());
         }
-        byte[] z3 = Type3Algorithm.z3UTF8(utf8Input);
-        return shortest(utf8Input, z3);
+        byte[] z4 = Type4Algorithm.z4UTF8(utf8Input);
+        return shortest(utf8Input, z4);
     }
 
     /**
      * Compresses UTF-8 bytes using a specific algorithm.
-     * Type values: 1 (type1), 2 (type2), 3 (type3/gzip).
+     * Type values: 1 (type1), 2 (type2), 3 (type3/gzip), 4 (type4/raw
+     * deflate), 6 (type6/built-in Huffman table). Type5 needs a dictionary, see
+     * {@link #zipWithDictionary(String, int)}.
      *
      * @param utf8Input UTF-8 encoded bytes
-     * @param type      compression type (1, 2, or 3)
+     * @param type      compression type (1, 2, 3, 4 or 6)
      * @return the compressed byte array
-     * @throws IllegalArgumentException if {@code type} is not 1, 2, or 3
+     * @throws IllegalArgumentException if {@code type} is not 1, 2, 3, 4 or 6
      */
     public static byte[] zipUTF8(byte[] utf8Input, int type) {
         switch (type) {
@@ -85,9 +111,347 @@ public class LitheStringAlgorithm {
                 return Type2Algorithm.z2UTF8(utf8Input);
             case 3:
                 return Type3Algorithm.z3UTF8(utf8Input);
+            case 4:
+                return Type4Algorithm.z4UTF8(utf8Input);
+            case 6:
+                return Type6Algorithm.z6UTF8(utf8Input);
             default:
-                throw new IllegalArgumentException("Type " + type + " not valid. Valid values are 1,2,3");
+                throw new IllegalArgumentException("Type " + type + " not valid. Valid values are 1,2,3,4,6");
+        }
+    }
+
+    /**
+     * Compresses the string like {@link #zip(String)}, behind a header holding
+     * its UTF-8 and UTF-16 lengths, read by {@link #decodedLength(byte[], int, int)}
+     * and {@link #decodedUTF8Length(byte[], int, int)} without decoding. The
+     * header takes 3 to 11 bytes.
+     * Returns {@code null} if {@code input} is null.
+     *
+     * @param input the input string
+     * @return the compressed byte array, or {@code null} if input is null
+     */
+    public static byte[] zipWithLength(String input) {
+        if (input == null) {
+            return null;
+        }
+        byte[] utf8 = Utf8Strings.utf8(input);
+        return LengthPrefix.wrap(zipUTF8(utf8), utf8.length, input.length());
+    }
+
+    /**
+     * Compresses the string like {@link #zipWithBlocks(String, int)}, in blocks
+     * of 32 KB.
+     * Returns {@code null} if {@code input} is null.
+     *
+     * @param input the input string
+     * @return the compressed byte array, or {@code null} if input is null
+     */
+    public static byte[] zipWithBlocks(String input) {
+        return zipWithBlocks(input, BlockCodec.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Compresses the UTF-8 bytes of the string in blocks, each with
+     * {@link #zipUTF8(byte[])}, behind an index of their offsets and lengths:
+     * {@link #charAt(byte[], int, int, int)} and
+     * {@link #substring(byte[], int, int, int, int)} decode only the blocks they
+     * touch, {@link #unzip(byte[], Executor)} decodes them in parallel. The index
+     * takes 12 bytes per block.
+     * Returns {@code null} if {@code input} is null.
+     *
+     * @param input     the input string
+     * @param blockSize UTF-8 bytes per block, from 1 KB to 16 MB; blocks end on
+     *                  code point boundaries
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if blockSize is out of range
+     */
+    public static byte[] zipWithBlocks(String input, int blockSize) {
+        if (input == null) {
+            return null;
+        }
+        return BlockCodec.zip(input, blockSize);
+    }
+
+    // decoded chars read from a header, or -1
+    private static int knownLength(byte[] content, int offset, int length) {
+        if (LengthPrefix.isWrapped(content, offset, length)) {
+            return LengthPrefix.utf16Length(content, offset, length);
+        }
+        if (BlockCodec.isBlocks(content, offset, length)) {
+            return new BlockCodec.Index(content, offset, length).length();
+        }
+        return -1;
+    }
+
+    /**
+     * Length of the decoded string: read from the header of
+     * {@link #zipWithLength(String)} and {@link #zipWithBlocks(String)} content,
+     * otherwise found by decoding without building the String
+     *
+     * @param content compressed bytes, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @return {@code unzip(content, offset, length).length()}
+     */
+    public static int decodedLength(byte[] content, int offset, int length) {
+        int known = knownLength(content, offset, length);
+        if (known >= 0) {
+            return known;
+        }
+        return unzip(content, offset, length, new Utf8Sink<Integer>() {
+            @Override
+            public Integer accept(byte[] utf8, int from, int count) {
+                int chars = Utils.countChars(utf8, from, count);
+                return chars >= 0 ? chars : new String(utf8, from, count, StandardCharsets.UTF_8).length();
+            }
+        });
+    }
+
+    /**
+     * Length of the decoded UTF-8 bytes: read from the header of
+     * {@link #zipWithLength(String)} and {@link #zipWithBlocks(String)} content,
+     * otherwise found by decoding
+     *
+     * @param content compressed bytes, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @return the number of UTF-8 bytes the content decodes to
+     */
+    public static int decodedUTF8Length(byte[] content, int offset, int length) {
+        if (LengthPrefix.isWrapped(content, offset, length)) {
+            return LengthPrefix.utf8Length(content, offset, length);
+        }
+        if (BlockCodec.isBlocks(content, offset, length)) {
+            return new BlockCodec.Index(content, offset, length).utf8Length();
+        }
+        return unzip(content, offset, length, new Utf8Sink<Integer>() {
+            @Override
+            public Integer accept(byte[] utf8, int from, int count) {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Registers a preset dictionary for {@link #zipWithDictionary(String, int)}.
+     * Compressed bytes record the dictionary id, so the same dictionary must be
+     * registered under the same id before they are decoded.
+     *
+     * @param id         dictionary id, from 0 to 255
+     * @param dictionary content likely to appear in the strings (boilerplate,
+     *                   common keys and values); only the last 32 KB are used
+     * @throws IllegalArgumentException if the id is out of range, the
+     *                                  dictionary is empty, or the id is
+     *                                  already registered with other content
+     */
+    public static void registerDictionary(int id, byte[] dictionary) {
+        Type5Algorithm.register(id, dictionary);
+    }
+
+    /**
+     * Builds a preset dictionary from samples, for
+     * {@link #registerDictionary(int, byte[])}
+     *
+     * @param samples UTF-8 samples
+     * @param size    maximum size of the dictionary, up to
+     *                {@link #MAX_DICTIONARY_SIZE}
+     * @return the dictionary, possibly shorter than size, or empty if the
+     *         samples share nothing
+     * @throws IllegalArgumentException if size is not valid
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int size) {
+        return DictionaryTrainer.train(samples, size);
+    }
+
+    /**
+     * Compresses the string using the best available encoding, including
+     * deflate primed with a registered preset dictionary.
+     * Returns {@code null} if {@code input} is null.
+     *
+     * @param input        the input string
+     * @param dictionaryId id of a registered dictionary
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the dictionary is not registered
+     */
+    public static byte[] zipWithDictionary(String input, int dictionaryId) {
+        return zipUTF8WithDictionary(input != null ? Utf8Strings.utf8(input) : null, dictionaryId);
+    }
+
+    /**
+     * Like {@link #zipWithDictionary(String, int)}, with already UTF-8 encoded
+     * input. The dictionary encoding is kept only if it is strictly shorter, so
+     * that the result does not depend on the dictionary when it does not help.
+     *
+     * @param utf8Input    UTF-8 encoded bytes
+     * @param dictionaryId id of a registered dictionary
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the dictionary is not registered
+     */
+    public static byte[] zipUTF8WithDictionary(byte[] utf8Input, int dictionaryId) {
+        return zipUTF8With(utf8Input, dictionaryId, -1);
+    }
+
+    /**
+     * Registers a static Huffman table for
+     * {@link #zipWithHuffmanTable(String, int)}, built from byte frequencies of
+     * typical input. Compressed bytes record the table id, so the same table
+     * must be registered under the same id before they are decoded.
+     *
+     * @param id          table id, from 0 to 255
+     * @param frequencies 256 non-negative frequencies, one per byte value of the
+     *                    UTF-8 input; bytes with frequency 0 are escaped
+     * @throws IllegalArgumentException if the id is out of range or already
+     *                                  registered with another table, or the
+     *                                  frequencies are not valid
+     */
+    public static void registerHuffmanTable(int id, int[] frequencies) {
+        Type6Algorithm.register(id, frequencies);
+    }
+
+    /**
+     * Compresses the string using the best available encoding, including a
+     * registered static Huffman table, which stores no per-string code table.
+     * Returns {@code null} if {@code input} is null.
+     *
+     * @param input   the input string
+     * @param tableId id of a registered table
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the table is not registered
+     */
+    public static byte[] zipWithHuffmanTable(String input, int tableId) {
+        return zipUTF8WithHuffmanTable(input != null ? Utf8Strings.utf8(input) : null, tableId);
+    }
+
+    /**
+     * Like {@link #zipWithHuffmanTable(String, int)}, with already UTF-8
+     * encoded input. The table encoding is kept only if it is strictly shorter.
+     *
+     * @param utf8Input UTF-8 encoded bytes
+     * @param tableId   id of a registered table
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the table is not registered
+     */
+    public static byte[] zipUTF8WithHuffmanTable(byte[] utf8Input, int tableId) {
+        return zipUTF8With(utf8Input, -1, tableId);
+    }
+
+    /**
+     * Compresses the string using the best available encoding, including a
+     * registered dictionary and a registered static Huffman table.
+     * Each of them is kept only if it is strictly shorter than the encodings that
+     * do not need it; the table wins ties with the dictionary.
+     *
+     * @param input        the input string
+     * @param dictionaryId id of a registered dictionary, or -1 for none
+     * @param tableId      id of a registered table, or -1 for none
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the dictionary or the table is not
+     *                                  registered
+     */
+    public static byte[] zipWith(String input, int dictionaryId, int tableId) {
+        return zipUTF8With(input != null ? Utf8Strings.utf8(input) : null, dictionaryId, tableId);
+    }
+
+    /**
+     * Like {@link #zipWith(String, int, int)}, with already UTF-8 encoded input
+     *
+     * @param utf8Input    UTF-8 encoded bytes
+     * @param dictionaryId id of a registered dictionary, or -1 for none
+     * @param tableId      id of a registered table, or -1 for none
+     * @return the compressed byte array, or {@code null} if input is null
+     * @throws IllegalArgumentException if the dictionary or the table is not
+     *                                  registered
+     */
+    public static byte[] zipUTF8With(byte[] utf8Input, int dictionaryId, int tableId) {
+        byte[] z6 = tableId >= 0 ? Type6Algorithm.z6UTF8(utf8Input, tableId) : null;
+        byte[] z5 = dictionaryId >= 0 ? Type5Algorithm.z5UTF8(utf8Input, dictionaryId) : null;
+        byte[] best = zipUTF8(utf8Input);
+        if (best == null) {
+            return null;
         }
+        if (z6 != null && z6.length < best.length) {
+            best = z6;
+        }
+        if (z5 != null && z5.length < best.length) {
+            best = z5;
+        }
+        return best;
+    }
+
+    /**
+     * Compresses every string like {@link #zip(String)}, in parallel on the
+     * common {@link ForkJoinPool}.
+     *
+     * @param inputs the input strings; null elements give null
+     * @return the compressed byte arrays, in the same order
+     */
+    public static byte[][] zipAll(String[] inputs) {
+        return zipAll(inputs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compresses every string like {@link #zip(String)}, in parallel: the
+     * strings are split into chunks of about the same total length, processed
+     * by the calling thread and by workers run on the executor.
+     *
+     * @param inputs   the input strings; null elements give null
+     * @param executor runs the workers
+     * @return the compressed byte arrays, in the same order
+     */
+    public static byte[][] zipAll(final String[] inputs, Executor executor) {
+        final byte[][] outputs = new byte[inputs.length][];
+        Batch.run(inputs.length, new IntUnaryOperator() {
+            @Override
+            public int applyAsInt(int i) {
+                return inputs[i] != null ? inputs[i].length() : 0;
+            }
+        }, executor, new Batch.Chunk() {
+            @Override
+            public void process(int from, int to) {
+                Type2Encoder encoder = new Type2Encoder();
+                for (int i = from; i < to; i++) {
+                    outputs[i] = inputs[i] != null ? zipUTF8(Utf8Strings.utf8(inputs[i]), encoder) : null;
+                }
+            }
+        });
+        return outputs;
+    }
+
+    /**
+     * Decompresses every byte array like {@link #unzip(byte[])}, in parallel on
+     * the common {@link ForkJoinPool}.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @return the decoded strings, in the same order
+     */
+    public static String[] unzipAll(byte[][] contents) {
+        return unzipAll(contents, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decompresses every byte array like {@link #unzip(byte[])}, in parallel,
+     * with the same chunking as {@link #zipAll(String[], Executor)}.
+     *
+     * @param contents compressed bytes; null elements give null
+     * @param executor runs the workers
+     * @return the decoded strings, in the same order
+     */
+    public static String[] unzipAll(final byte[][] contents, Executor executor) {
+        final String[] outputs = new String[contents.length];
+        Batch.run(contents.length, new IntUnaryOperator() {
+            @Override
+            public int applyAsInt(int i) {
+                return contents[i] != null ? contents[i].length : 0;
+            }
+        }, executor, new Batch.Chunk() {
+            @Override
+            public void process(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    outputs[i] = unzip(contents[i]);
+                }
+            }
+        });
+        return outputs;
     }
 
     /**
@@ -107,6 +471,65 @@ public class LitheStringAlgorithm {
         return zipped;
     }
 
+    /**
+     * Compresses the text using the best available encoding, like
+     * {@link #zip(String)}, into the buffer at its position. The text is
+     * encoded to UTF-8 once, into a temporary array (a String through
+     * {@link String#getBytes}, other sequences char by char), then compressed
+     * like {@link #zipUTF8(ByteBuffer, ByteBuffer)}.
+     *
+     * @param input the input text, not null
+     * @param dst   destination buffer; its position is advanced past the
+     *              compressed bytes
+     * @return the number of compressed bytes
+     * @throws java.nio.BufferOverflowException if the compressed bytes do not
+     *                                          fit, leaving dst unchanged
+     */
+    public static int zip(CharSequence input, ByteBuffer dst) {
+        return zipUTF8(ByteBuffer.wrap(Utils.encodeUTF8(input)), dst);
+    }
+
+    /**
+     * Compresses the UTF-8 bytes remaining in src, like {@link #zipUTF8(byte[])},
+     * into dst at its position. Above 512 bytes the input is deflated in place
+     * from heap buffers and in chunks through pooled scratch memory from direct
+     * ones, and the output goes straight into heap destinations with room for
+     * the input, otherwise through the scratch memory. Up to 512 bytes, where
+     * all the types are tried, the input is copied to a temporary array unless
+     * src wraps a whole array.
+     *
+     * @param src UTF-8 input; its position is advanced to its limit
+     * @param dst destination buffer; its position is advanced past the
+     *            compressed bytes
+     * @return the number of compressed bytes
+     * @throws java.nio.BufferOverflowException if the compressed bytes do not
+     *                                          fit, leaving both buffers
+     *                                          unchanged
+     */
+    public static int zipUTF8(ByteBuffer src, ByteBuffer dst) {
+        int written;
+        if (src.remaining() > 512) {
+            written = Type4Algorithm.z4UTF8(src, dst);
+        } else {
+            byte[] utf8;
+            if (src.hasArray() && src.arrayOffset() == 0 && src.position() == 0
+                    && src.remaining() == src.array().length) {
+                utf8 = src.array();
+            } else {
+                utf8 = new byte[src.remaining()];
+                src.duplicate().get(utf8);
+            }
+            byte[] zipped = zipUTF8(utf8);
+            if (dst.remaining() < zipped.length) {
+                throw new BufferOverflowException();
+            }
+            dst.put(zipped);
+            written = zipped.length;
+        }
+        src.position(src.limit());
+        return written;
+    }
+
     /**
      * Decompresses the given byte array back into a string.
      * Returns {@code null} if {@code content} is null.
@@ -121,16 +544,489 @@ public class LitheStringAlgorithm {
         if (content.length == 0) {
             return "";
         }
-        if (Utils.startsWith(content[0], "100")) {
-            return Type1Algorithm.unzip1(content);
+        return unzip(content, 0, content.length, Utf8Sink.STRING);
+    }
+
+    /**
+     * Decompresses the given byte array like {@link #unzip(byte[])}; the blocks
+     * of {@link #zipWithBlocks(String)} content are decoded in parallel, by the
+     * calling thread and by workers run on the executor.
+     *
+     * @param content  compressed bytes produced by {@link #zip(String)}
+     * @param executor runs the workers
+     * @return the decoded string, or {@code null} if content is null
+     */
+    public static String unzip(byte[] content, Executor executor) {
+        if (content != null && BlockCodec.isBlocks(content, 0, content.length)) {
+            return BlockCodec.unzip(content, 0, content.length, executor, Utf8Sink.STRING);
+        }
+        return unzip(content);
+    }
+
+    /**
+     * Decompresses the given byte array into the UTF-8 bytes of the original
+     * string, without decoding it to a String.
+     * Returns {@code null} if {@code content} is null.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}
+     * @return a new array with the UTF-8 bytes, or {@code null} if content is
+     *         null
+     */
+    public static byte[] unzipUTF8(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        return unzip(content, 0, content.length, Utf8Sink.BYTES);
+    }
+
+    /**
+     * Decompresses the bytes remaining in src, a whole compressed value, into
+     * the UTF-8 bytes of the original string, written to dst at its position.
+     * Heap buffers are read in place. Type4 content, what zip writes above 512
+     * bytes, is read from direct buffers in chunks through pooled scratch
+     * memory; other content is copied from direct buffers to a temporary
+     * array. The deflate-based types decode through pooled scratch memory, the
+     * others through a buffer of the decoded size.
+     *
+     * @param src compressed bytes; its position is advanced to its limit
+     * @param dst destination buffer; its position is advanced past the UTF-8
+     *            bytes
+     * @return the number of UTF-8 bytes
+     * @throws java.nio.BufferOverflowException if the UTF-8 bytes do not fit,
+     *                                          leaving both buffers unchanged
+     */
+    public static int unzipTo(ByteBuffer src, final ByteBuffer dst) {
+        int length = src.remaining();
+        if (!src.hasArray() && length > 0 && (src.get(src.position()) & 0xFF) == Type4Algorithm.HEADER) {
+            int written = Type4Algorithm.unzip4(src, dst);
+            src.position(src.limit());
+            return written;
         }
-        if (Utils.startsWith(content[0], "1010")) {
-            return Type2Algorithm.unzip2(content);
+        byte[] content;
+        int offset;
+        if (src.hasArray()) {
+            content = src.array();
+            offset = src.arrayOffset() + src.position();
+        } else {
+            content = new byte[length];
+            offset = 0;
+            src.duplicate().get(content);
         }
-        if ((content[0] & 0xFF) == 0b10111111) {
-            return Type3Algorithm.unzip3(content);
+        int written = unzip(content, offset, length, new Utf8Sink<Integer>() {
+            @Override
+            public Integer accept(byte[] utf8, int from, int count) {
+                if (dst.remaining() < count) {
+                    throw new BufferOverflowException();
+                }
+                dst.put(utf8, from, count);
+                return count;
+            }
+        });
+        src.position(src.limit());
+        return written;
+    }
+
+    /**
+     * Decompresses the given byte array and appends the original string to the
+     * builder, without building the String.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the builder
+     * @return the number of chars appended
+     */
+    public static int unzipTo(byte[] content, StringBuilder dst) {
+        return unzipTo(content, 0, content.length, dst);
+    }
+
+    /**
+     * Like {@link #unzipTo(byte[], StringBuilder)}, for compressed bytes inside
+     * a larger array.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param dst     the builder
+     * @return the number of chars appended
+     */
+    public static int unzipTo(byte[] content, int offset, int length, final StringBuilder dst) {
+        int known = knownLength(content, offset, length);
+        if (known >= 0) {
+            dst.ensureCapacity(dst.length() + known);
+        }
+        return unzip(content, offset, length, new Utf8Sink<Integer>() {
+            @Override
+            public Integer accept(byte[] utf8, int from, int count) {
+                // decoded into pooled chars, then appended in bulk
+                DeflateContext context = DeflateContext.acquire();
+                try {
+                    char[] chars = context.chars(count);
+                    int n = Utils.decodeUTF8(utf8, from, count, chars, 0);
+                    if (n >= 0) {
+                        dst.append(chars, 0, n);
+                        return n;
+                    }
+                } finally {
+                    DeflateContext.release(context);
+                }
+                // not well-formed: replaced like the String constructor does
+                String s = new String(utf8, from, count, StandardCharsets.UTF_8);
+                dst.append(s);
+                return s.length();
+            }
+        });
+    }
+
+    /**
+     * Decompresses the given byte array and appends the original string to dst,
+     * without building the String: the chars are decoded into pooled scratch
+     * memory and written in bulk, through {@link Writer#write(char[], int, int)},
+     * {@link CharBuffer#put(char[], int, int)} or
+     * {@link StringBuilder#append(char[], int, int)}, or appended as a
+     * {@link CharBuffer} over the scratch, which dst must not keep.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the destination
+     * @return the number of chars appended
+     * @throws IOException if dst throws it
+     */
+    public static int unzipTo(byte[] content, final Appendable dst) throws IOException {
+        if (dst instanceof StringBuilder) {
+            return unzipTo(content, (StringBuilder) dst);
+        }
+        try {
+            return unzip(content, 0, content.length, new Utf8Sink<Integer>() {
+                @Override
+                public Integer accept(byte[] utf8, int from, int count) {
+                    try {
+                        DeflateContext context = DeflateContext.acquire();
+                        try {
+                            char[] chars = context.chars(count);
+                            int n = Utils.decodeUTF8(utf8, from, count, chars, 0);
+                            if (n >= 0) {
+                                if (dst instanceof Writer) {
+                                    ((Writer) dst).write(chars, 0, n);
+                                } else if (dst instanceof CharBuffer) {
+                                    ((CharBuffer) dst).put(chars, 0, n);
+                                } else {
+                                    dst.append(CharBuffer.wrap(chars, 0, n));
+                                }
+                                return n;
+                            }
+                        } finally {
+                            DeflateContext.release(context);
+                        }
+                        // not well-formed: replaced like the String constructor does
+                        String s = new String(utf8, from, count, StandardCharsets.UTF_8);
+                        dst.append(s);
+                        return s.length();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Decompresses the given byte array into the chars of the original string,
+     * written to dst from offset.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param dst     the destination
+     * @param offset  where to write the first char
+     * @return the number of chars written
+     * @throws IndexOutOfBoundsException if the chars do not fit in dst; dst may
+     *                                   be partly written
+     */
+    public static int unzipTo(byte[] content, final char[] dst, final int offset) {
+        if (offset < 0 || offset > dst.length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds for length " + dst.length);
+        }
+        int chars = knownLength(content, 0, content.length);
+        if (chars > dst.length - offset) {
+            throw new IndexOutOfBoundsException(chars + " chars do not fit in " + (dst.length - offset));
+        }
+        return unzip(content, 0, content.length, new Utf8Sink<Integer>() {
+            @Override
+            public Integer accept(byte[] utf8, int from, int count) {
+                int n = Utils.decodeUTF8(utf8, from, count, dst, offset);
+                if (n < 0) {
+                    // not well-formed or not fitting: the String tells which
+                    String s = new String(utf8, from, count, StandardCharsets.UTF_8);
+                    if (s.length() > dst.length - offset) {
+                        throw new IndexOutOfBoundsException(
+                                s.length() + " chars do not fit in " + (dst.length - offset));
+                    }
+                    s.getChars(0, s.length(), dst, offset);
+                    n = s.length();
+                }
+                return n;
+            }
+        });
+    }
+
+    /**
+     * Decompresses compressed bytes inside a larger array.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @return the decoded string
+     */
+    public static String unzip(byte[] content, int offset, int length) {
+        return unzip(content, offset, length, Utf8Sink.STRING);
+    }
+
+    /**
+     * Lazy view of compressed bytes: chars are decoded only as far as they are
+     * asked for. Not safe for concurrent use.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @return the view; {@code toString()} decodes the whole string
+     */
+    public static CharSequence asCharSequence(byte[] content, int offset, int length) {
+        if (BlockCodec.isBlocks(content, offset, length)) {
+            return new BlockCodec.View(content, offset, length);
+        }
+        return new LazyCharSequence(content, offset, length);
+    }
+
+    /**
+     * Char of the decoded string: only the block holding it is decoded for
+     * {@link #zipWithBlocks(String)} content, only the chars up to it otherwise
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param index   index of the char
+     * @return {@code unzip(content, offset, length).charAt(index)}
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public static char charAt(byte[] content, int offset, int length, int index) {
+        return asCharSequence(content, offset, length).charAt(index);
+    }
+
+    /**
+     * Part of the decoded string: only the blocks holding it are decoded for
+     * {@link #zipWithBlocks(String)} content, only the chars up to its end
+     * otherwise
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param from    first char, inclusive
+     * @param to      last char, exclusive
+     * @return {@code unzip(content, offset, length).substring(from, to)}
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public static String substring(byte[] content, int offset, int length, int from, int to) {
+        return asCharSequence(content, offset, length).subSequence(from, to).toString();
+    }
+
+    /**
+     * Tests the start of compressed bytes, decoding only until the answer is known
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param prefix  not null
+     * @return {@code unzip(content, offset, length).startsWith(prefix)}
+     */
+    public static boolean startsWith(byte[] content, int offset, int length, String prefix) {
+        return Utf8Search.startsWith(content, offset, length, prefix);
+    }
+
+    /**
+     * Tests the end of compressed bytes, decoding them without building the
+     * String
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param suffix  not null
+     * @return {@code unzip(content, offset, length).endsWith(suffix)}
+     */
+    public static boolean endsWith(byte[] content, int offset, int length, String suffix) {
+        return Utf8Search.endsWith(content, offset, length, suffix);
+    }
+
+    /**
+     * Searches compressed bytes, decoding only until the answer is known
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param s       not null
+     * @return {@code unzip(content, offset, length).indexOf(s)}
+     */
+    public static int indexOf(byte[] content, int offset, int length, String s) {
+        return Utf8Search.indexOf(content, offset, length, s);
+    }
+
+    /**
+     * Searches compressed bytes, decoding only until the answer is known
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param s       not null
+     * @return {@code unzip(content, offset, length).contains(s)}
+     */
+    public static boolean contains(byte[] content, int offset, int length, String s) {
+        return Utf8Search.contains(content, offset, length, s);
+    }
+
+    /**
+     * Tells whether compressed bytes decode to the given string, without
+     * building the decoded String.
+     *
+     * @param content compressed bytes produced by {@link #zip(String)}, not null
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param s       the string to compare with, not null
+     * @return {@code unzip(content, offset, length).equals(s)}
+     */
+    public static boolean contentEquals(byte[] content, int offset, int length, final String s) {
+        int known = knownLength(content, offset, length);
+        if (known >= 0 && known != s.length()) {
+            return false;
+        }
+        return unzip(content, offset, length, new Utf8Sink<Boolean>() {
+            @Override
+            public Boolean accept(byte[] utf8, int from, int count) {
+                // a char takes 1 to 3 bytes, a replaced malformed sequence too
+                if (count < s.length() || count > 3L * s.length()) {
+                    return false;
+                }
+                DeflateContext context = DeflateContext.acquire();
+                try {
+                    char[] chars = context.chars(count);
+                    int n = Utils.decodeUTF8(utf8, from, count, chars, 0);
+                    if (n >= 0) {
+                        if (n != s.length()) {
+                            return false;
+                        }
+                        for (int i = 0; i < n; i++) {
+                            if (chars[i] != s.charAt(i)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                } finally {
+                    DeflateContext.release(context);
+                }
+                return new String(utf8, from, count, StandardCharsets.UTF_8).equals(s);
+            }
+        });
+    }
+
+    /**
+     * Decompresses content[offset, offset + length) and hands the UTF-8 bytes to
+     * the sink
+     *
+     * @param content
+     * @param offset
+     * @param length
+     * @param sink
+     * @return the result of the sink
+     */
+    static <T> T unzip(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        if (length == 0) {
+            return sink.accept(content, offset, 0);
+        }
+        int header = content[offset] & 0xFF;
+        if ((header & 0xE0) == 0b10000000) { // 100xxxxx
+            return Type1Algorithm.unzip1(content, offset, length, sink);
+        }
+        if ((header & 0xF0) == 0b10100000) { // 1010xxxx
+            return Type2Algorithm.unzip2(content, offset, length, sink);
+        }
+        if (header == 0b10111111) {
+            return Type3Algorithm.unzip3(content, offset, length, sink);
+        }
+        if (header == 0b10111110) {
+            return Type4Algorithm.unzip4(content, offset, length, sink);
+        }
+        if (header == 0b10111101) {
+            return Type5Algorithm.unzip5(content, offset, length, sink);
+        }
+        if ((header & 0xF8) == 0b10110000 || header == 0b10111100) { // 10110xxx or table id
+            return Type6Algorithm.unzip6(content, offset, length, sink);
+        }
+        if (header == LengthPrefix.HEADER) {
+            return LengthPrefix.unzip(content, offset, length, sink);
+        }
+        if (header == BlockCodec.HEADER) {
+            return BlockCodec.unzip(content, offset, length, null, sink);
+        }
+        return sink.accept(content, offset, length);
+    }
+
+    /**
+     * Picks the shortest between raw UTF-8, type1, type2, type6 and (if
+     * {@code withDeflate}) type4, with ties going to the first of them, like
+     * {@link #shortest(byte[]...)} over all the outputs would. The sizes of
+     * type1, type2 and type6 are computed exactly before encoding, so only the
+     * winner is written, and deflate runs only if its lower bound can beat the best so
+     * far. Type3 is never a candidate: it is type4 plus 18 bytes of gzip framing,
+     * minus a length varint of at most 5.
+     *
+     * @param utf8Input   not empty
+     * @param withDeflate
+     * @param encoder     type2 encoder to plan with
+     * @return the shortest encoding
+     */
+    private static byte[] smallest(byte[] utf8Input, boolean withDeflate, Type2Encoder encoder) {
+        int bestLength = utf8Input.length;
+        int best = 0;
+
+        int z1Length = Type1Algorithm.z1Length(utf8Input);
+        if (z1Length < bestLength) {
+            bestLength = z1Length;
+            best = 1;
+        }
+
+        byte[] z2 = null;
+        int z2Length;
+        if (encoder.plan(utf8Input)) {
+            z2Length = encoder.byteLength();
+        } else {
+            z2 = Type2Algorithm.z2UTF8Objects(utf8Input);
+            z2Length = z2.length;
+        }
+        if (z2Length < bestLength) {
+            bestLength = z2Length;
+            best = 2;
+        }
+
+        int z6Length = Type6Algorithm.z6Length(utf8Input);
+        if (z6Length < bestLength) {
+            bestLength = z6Length;
+            best = 6;
+        }
+
+        if (withDeflate && Type4Algorithm.MIN_LENGTH < bestLength) {
+            byte[] z4 = Type4Algorithm.z4UTF8(utf8Input);
+            if (z4.length < bestLength) {
+                return z4;
+            }
+        }
+
+        switch (best) {
+            case 1:
+                return Type1Algorithm.z1UTF8(utf8Input);
+            case 2:
+                return z2 != null ? z2 : encoder.write();
+            case 6:
+                return Type6Algorithm.z6UTF8(utf8Input);
+            default:
+                return utf8Input;
         }
-        return new String(content, StandardCharsets.UTF_8);
     }
 
     /**
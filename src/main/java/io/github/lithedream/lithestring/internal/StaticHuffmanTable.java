@@ -0,0 +1,200 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Canonical Huffman code over byte values, shared by many strings instead of
+ * being written in each of them. Bytes without a code are written as an escape
+ * code followed by the raw byte.
+ *
+ * <p>
+ * Codes are at most {@link #MAX_CODE_LENGTH} bits long, so decoding is a
+ * single lookup in a table indexed by the next {@link #MAX_CODE_LENGTH} bits.
+ * </p>
+ */
+final class StaticHuffmanTable {
+
+    static final int MAX_CODE_LENGTH = 12;
+
+    private static final int ESCAPE = 256;
+
+    // 0 for bytes without a code
+    private final int[] lengths = new int[257];
+    private final int[] codes = new int[257];
+    // (symbol << 4) | length, indexed by the next MAX_CODE_LENGTH bits
+    private final int[] lookup = new int[1 << MAX_CODE_LENGTH];
+    private final int minCodeLength;
+
+    /**
+     * Builds the code from symbol frequencies
+     *
+     * @param frequencies     frequency of every byte value, 0 for bytes to escape
+     * @param escapeFrequency frequency of the escape, greater than 0
+     */
+    StaticHuffmanTable(int[] frequencies, int escapeFrequency) {
+        long[] weights = new long[257];
+        for (int b = 0; b < 256; b++) {
+            weights[b] = frequencies[b];
+        }
+        weights[ESCAPE] = escapeFrequency;
+
+        // halve the weights until the tree is shallow enough
+        while (!codeLengths(weights, lengths)) {
+            for (int s = 0; s < weights.length; s++) {
+                if (weights[s] > 0) {
+                    weights[s] = (weights[s] + 1) >>> 1;
+                }
+            }
+        }
+
+        // canonical codes: by length, then by symbol
+        int code = 0;
+        int min = MAX_CODE_LENGTH;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            for (int s = 0; s < lengths.length; s++) {
+                if (lengths[s] == length) {
+                    codes[s] = code;
+                    int shift = MAX_CODE_LENGTH - length;
+                    Arrays.fill(lookup, code << shift, (code + 1) << shift, (s << 4) | length);
+                    code++;
+                    min = Math.min(min, length);
+                }
+            }
+            code <<= 1;
+        }
+        minCodeLength = min;
+    }
+
+    /**
+     * Huffman code lengths, with ties broken by symbol value
+     *
+     * @return false if some code is longer than MAX_CODE_LENGTH
+     */
+    private static boolean codeLengths(long[] weights, int[] lengths) {
+        int n = 0;
+        int[] leaves = new int[weights.length];
+        for (int s = 0; s < weights.length; s++) {
+            if (weights[s] > 0) {
+                leaves[n++] = s;
+            }
+        }
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = leaves[i];
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return weights[a] != weights[b] ? Long.compare(weights[a], weights[b]) : a - b;
+            }
+        });
+
+        // two-queue construction: leaves in weight order, then internal nodes in
+        // creation order (which is also weight order)
+        int[] parent = new int[2 * n];
+        long[] weight = new long[2 * n];
+        for (int i = 0; i < n; i++) {
+            weight[i] = weights[sorted[i]];
+        }
+        int nextLeaf = 0;
+        int nextNode = n;
+        for (int node = n; node < 2 * n - 1; node++) {
+            int[] children = new int[2];
+            for (int c = 0; c < 2; c++) {
+                if (nextLeaf < n && (nextNode >= node || weight[nextLeaf] <= weight[nextNode])) {
+                    children[c] = nextLeaf++;
+                } else {
+                    children[c] = nextNode++;
+                }
+            }
+            weight[node] = weight[children[0]] + weight[children[1]];
+            parent[children[0]] = node;
+            parent[children[1]] = node;
+        }
+
+        Arrays.fill(lengths, 0);
+        int[] depth = new int[2 * n];
+        for (int node = 2 * n - 3; node >= 0; node--) {
+            depth[node] = depth[parent[node]] + 1;
+        }
+        for (int i = 0; i < n; i++) {
+            // a lone symbol still needs one bit
+            int length = Math.max(1, depth[i]);
+            if (length > MAX_CODE_LENGTH) {
+                return false;
+            }
+            lengths[sorted[i]] = length;
+        }
+        return true;
+    }
+
+    /**
+     * @param other
+     * @return true if both tables assign the same codes
+     */
+    boolean sameCodes(StaticHuffmanTable other) {
+        return Arrays.equals(lengths, other.lengths);
+    }
+
+    /**
+     * @param input
+     * @return the exact number of bits of the encoded input
+     */
+    long bitLength(byte[] input) {
+        long bits = 0;
+        int escapeLength = lengths[ESCAPE] + 8;
+        for (byte b : input) {
+            int length = lengths[b & 0xFF];
+            bits += length != 0 ? length : escapeLength;
+        }
+        return bits;
+    }
+
+    /**
+     * Writes the code of every byte of the input
+     *
+     * @param output
+     * @param input
+     */
+    void write(BitWriter output, byte[] input) {
+        for (byte b : input) {
+            int s = b & 0xFF;
+            if (lengths[s] != 0) {
+                output.write(codes[s], lengths[s]);
+            } else {
+                output.write(codes[ESCAPE], lengths[ESCAPE]);
+                output.write(b);
+            }
+        }
+    }
+
+    /**
+     * @param bits size of an encoded payload
+     * @return how many bytes it can decode to at most
+     */
+    int maxDecodedLength(long bits) {
+        return (int) Math.min(bits / minCodeLength, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Decodes codes until the end of the reader
+     *
+     * @param input
+     * @param out   at least maxDecodedLength(input.bitsLeft()) bytes
+     * @return the number of decoded bytes
+     */
+    int decode(BitReader input, byte[] out) {
+        int pos = 0;
+        while (!input.isClosed()) {
+            int entry = lookup[input.peekBits(MAX_CODE_LENGTH)];
+            if (entry == 0) {
+                throw new IllegalArgumentException("Invalid code");
+            }
+            input.skip(entry & 0xF);
+            int s = entry >>> 4;
+            out[pos++] = s != ESCAPE ? (byte) s : input.readByte();
+        }
+        return pos;
+    }
+}
@@ -1,11 +1,5 @@
 package io.github.lithedream.lithestring.internal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.PushbackInputStream;
-import java.nio.charset.StandardCharsets;
-
 class Type1Algorithm {
     /**
      * Compresses the string using a custom encoding with 5 bits for a-z and space
@@ -15,7 +9,7 @@ class Type1Algorithm {
      * @return the compressed byte[]
      */
     static byte[] z1(String input) {
-        return z1UTF8(input != null ? input.getBytes(StandardCharsets.UTF_8) : null);
+        return z1UTF8(input != null ? Utf8Strings.utf8(input) : null);
     }
 
     /**
@@ -28,122 +22,164 @@ class Type1Algorithm {
         if (utf8Input == null) {
             return null;
         }
-        if (utf8Input.length == 0) {
+        int n = utf8Input.length;
+        if (n == 0) {
             return new byte[] {};
         }
-        BitWriter output = new BitWriter();
-        output.write01("100");
+        BitWriter output = new BitWriter((11 * n + 4) / 8 + 1);
+        output.write(0b100, 3);
 
         boolean caps = false;
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(utf8Input)) {
-            int in;
-            while ((in = bais.read()) != -1) {
-                byte byt = (byte) in;
-                int nExtraByte = Utils.getNExtraBytes(byt);
-                for (int i = 0; i < nExtraByte; i++) {
-                    bais.read();
+        for (int i = 0; i < n; i += 1 + Utils.getNExtraBytes(utf8Input[i])) {
+            byte byt = utf8Input[i];
+            if (byt >= 97 && byt <= 122) { // lower
+                caps = false;
+                break;
+            }
+            if (byt >= 65 && byt <= 90) { // upper
+                caps = true;
+                break;
+            }
+        }
+        output.write(caps);
+
+        int i = 0;
+        while (i < n) {
+            byte byt = utf8Input[i++];
+            if (byt >= 97 && byt <= 122) { // lower
+                if (caps) {
+                    if (i < n && utf8Input[i] >= 65 && utf8Input[i] <= 90) { // if the next is upper
+                        output.write(0b111, 3); // write this in utf8
+                        output.write(byt);
+                        continue;
+                    }
+                    output.write(0b00000, 5);
+                    caps = !caps;
                 }
-                if (byt >= 97 && byt <= 122) { // lower
-                    caps = false;
-                    break;
+                output.write(byt - 96, 5);
 
+            } else if (byt >= 65 && byt <= 90) { // upper
+                if (!caps) {
+                    if (i < n && utf8Input[i] >= 97 && utf8Input[i] <= 122) { // if the next is lower
+                        output.write(0b111, 3); // write this in utf8
+                        output.write(byt);
+                        continue;
+                    }
+                    output.write(0b00000, 5);
+                    caps = !caps;
                 }
-                if (byt >= 65 && byt <= 90) { // upper
-                    caps = true;
-                    break;
+                output.write(byt - 64, 5);
+
+            } else if (byt == 32) { // space
+                output.write(0b11011, 5);
+            } else {
+                output.write(0b111, 3);
+                output.write(byt);
+                for (int k = Utils.getNExtraBytes(byt); k > 0; k--) {
+                    output.write(i < n ? utf8Input[i++] : (byte) -1);
                 }
             }
-        } catch (IOException e) {
-
         }
-        output.write(caps);
+        return output.toByteArray();
+    }
 
-        try (PushbackInputStream bais = new PushbackInputStream(new ByteArrayInputStream(utf8Input))) {
-            int in;
-            while ((in = bais.read()) != -1) {
-                byte byt = (byte) in;
-                if (byt >= 97 && byt <= 122) { // lower
-                    if (caps) {
-                        int in2 = bais.read();
-                        if (in2 != -1) {
-                            bais.unread(in2); // push it back
-                            if (in2 >= 65 && in2 <= 90) { // if the next is upper
-                                output.write01("111"); // write this in utf8
-                                output.write(byt);
-                                continue;
-                            }
-                        }
-                        output.write01("00000");
-                        caps = !caps;
-                    }
-                    output.writeLast5Bits((byte) (byt - 96));
+    /**
+     * Exact size of the output of z1UTF8, computed with the same scan but
+     * without writing anything
+     *
+     * @param utf8Input not empty
+     * @return the length of z1UTF8(utf8Input)
+     */
+    static int z1Length(byte[] utf8Input) {
+        int n = utf8Input.length;
+        boolean caps = false;
+        for (int i = 0; i < n; i += 1 + Utils.getNExtraBytes(utf8Input[i])) {
+            byte byt = utf8Input[i];
+            if (byt >= 97 && byt <= 122) { // lower
+                caps = false;
+                break;
+            }
+            if (byt >= 65 && byt <= 90) { // upper
+                caps = true;
+                break;
+            }
+        }
 
-                } else if (byt >= 65 && byt <= 90) { // upper
-                    if (!caps) {
-                        int in2 = bais.read();
-                        if (in2 != -1) {
-                            bais.unread(in2); // push it back
-                            if (in2 >= 97 && in2 <= 122) { // if the next is lower
-                                output.write01("111"); // write this in utf8
-                                output.write(byt);
-                                continue;
-                            }
-                        }
-                        output.write01("00000");
-                        caps = !caps;
+        long bits = 3 + 1;
+        int i = 0;
+        while (i < n) {
+            byte byt = utf8Input[i++];
+            if (byt >= 97 && byt <= 122) { // lower
+                if (caps) {
+                    if (i < n && utf8Input[i] >= 65 && utf8Input[i] <= 90) { // if the next is upper
+                        bits += 3 + 8;
+                        continue;
                     }
-                    output.writeLast5Bits((byte) (byt - 64));
+                    bits += 5;
+                    caps = !caps;
+                }
+                bits += 5;
 
-                } else if (byt == 32) { // space
-                    output.write01("11011");
-                } else {
-                    output.write01("111");
-                    output.write(byt);
-                    for (int i = 0; i < Utils.getNExtraBytes(byt); i++) {
-                        output.write((byte) bais.read());
+            } else if (byt >= 65 && byt <= 90) { // upper
+                if (!caps) {
+                    if (i < n && utf8Input[i] >= 97 && utf8Input[i] <= 122) { // if the next is lower
+                        bits += 3 + 8;
+                        continue;
                     }
+                    bits += 5;
+                    caps = !caps;
                 }
-            }
-        } catch (IOException e) {
+                bits += 5;
 
+            } else if (byt == 32) { // space
+                bits += 5;
+            } else {
+                int nExtraBytes = Utils.getNExtraBytes(byt);
+                bits += 3 + 8 + (nExtraBytes << 3);
+                i = Math.min(n, i + nExtraBytes);
+            }
         }
-        output.close();
-        return output.toByteArray();
+        return (int) ((bits + 7) >>> 3);
     }
 
     /**
      * Uncompresses the compressed content using type1 algorithm
      *
      * @param content
-     * @return the original string
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
      */
-    static String unzip1(byte[] content) {
-        BitReader bitReader = new BitReader(content);
-        bitReader.advance(3);
+    static <T> T unzip1(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        BitReader bitReader = new BitReader(content, offset, length);
+        bitReader.skip(3);
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        boolean caps = bitReader.read(1) == 1;
+        // 5 bits at least per byte, and a truncated escape can yield 4
+        byte[] out = new byte[(int) (bitReader.bitsLeft() / 5) + 4];
+        int pos = 0;
+        boolean caps = bitReader.readBits(1) == 1;
         while (!bitReader.isClosed()) {
-            if (bitReader.peek01("111")) {
-                bitReader.advance(3);
-                byte read = bitReader.read();
+            if (bitReader.peekBits(3) == 0b111) {
+                bitReader.skip(3);
+                byte read = bitReader.readByte();
 
-                baos.write(read);
+                out[pos++] = read;
                 for (int i = 0; i < Utils.getNExtraBytes(read); i++) {
-                    baos.write(bitReader.read());
+                    out[pos++] = bitReader.readByte();
                 }
             } else {
-                byte read = bitReader.read(5);
+                int read = bitReader.readBits(5);
                 if (read == 0) {
                     caps = !caps;
-                } else if ((read & 0xFF) == 0b00011011) {
-                    baos.write(32); // space
+                } else if (read == 0b00011011) {
+                    out[pos++] = 32; // space
                 } else {
-                    baos.write(read + (caps ? 64 : 96)); // UPPER:lower
+                    out[pos++] = (byte) (read + (caps ? 64 : 96)); // UPPER:lower
                 }
             }
         }
-        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        return sink.accept(out, 0, pos);
     }
 
 }
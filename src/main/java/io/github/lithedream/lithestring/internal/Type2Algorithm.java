@@ -1,11 +1,10 @@
 package io.github.lithedream.lithestring.internal;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -21,7 +20,7 @@ class Type2Algorithm {
      * @return the compressed byte[]
      */
     static byte[] z2(String input) {
-        return z2UTF8(input != null ? input.getBytes(StandardCharsets.UTF_8) : null);
+        return z2UTF8(input != null ? Utf8Strings.utf8(input) : null);
     }
 
     /**
@@ -37,6 +36,18 @@ class Type2Algorithm {
         if (input.length == 0) {
             return new byte[] {};
         }
+        byte[] encoded = new Type2Encoder().encode(input);
+        return encoded != null ? encoded : z2UTF8Objects(input);
+    }
+
+    /**
+     * Original object-based Type2 encoder, still used for input that is not
+     * well-formed UTF-8 (where Type2Encoder refuses to guess the grouping)
+     *
+     * @param input
+     * @return the compressed byte[]
+     */
+    static byte[] z2UTF8Objects(byte[] input) {
         List<UTF8Char> listChars = new ArrayList<>();
         try (ByteArrayInputStream bais = new ByteArrayInputStream(input)) {
             int in;
@@ -83,12 +94,21 @@ class Type2Algorithm {
             }
         });
 
-        BitWriter output = innerZ2(listChars, 0, huff, listHuff);
+        int[] lengths = new int[listHuff.size()];
+        long[] codes = new long[listHuff.size()];
+        Map<UTF8Char, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < listHuff.size(); i++) {
+            String code = listHuff.get(i).getValue();
+            lengths[i] = code.length();
+            codes[i] = Long.parseLong(code, 2);
+            indexes.put(listHuff.get(i).getKey(), i);
+        }
+
+        BitWriter output = innerZ2(listChars, 0, listHuff, indexes, codes, lengths);
         int spareBits = output.getSpareBits();
         if (spareBits > 0) {
-            output = innerZ2(listChars, spareBits, huff, listHuff);
+            output = innerZ2(listChars, spareBits, listHuff, indexes, codes, lengths);
         }
-        output.close();
         return output.toByteArray();
     }
 
@@ -97,48 +117,48 @@ class Type2Algorithm {
      *
      * @param listChars
      * @param spareBits
-     * @param huff
      * @param listHuff
+     * @param indexes   position of each character in listHuff
+     * @param codes     Huffman code of each entry of listHuff
+     * @param lengths   Huffman code length of each entry of listHuff
      * @return
      */
-    private static BitWriter innerZ2(List<UTF8Char> listChars, int spareBits, Map<UTF8Char, String> huff,
-            List<Map.Entry<UTF8Char, String>> listHuff) {
-        BitWriter output = new BitWriter();
-        output.write01("1010");
-        for (int i = 0; i < spareBits; i++) {
-            output.write01("0");
-        }
-        output.write01("1");
+    private static BitWriter innerZ2(List<UTF8Char> listChars, int spareBits,
+            List<Map.Entry<UTF8Char, String>> listHuff, Map<UTF8Char, Integer> indexes, long[] codes,
+            int[] lengths) {
+        BitWriter output = new BitWriter(listChars.size() + 4 * listHuff.size() + 2);
+        output.write(0b1010, 4);
+        output.write(0, spareBits);
+        output.write(0b1, 1);
 
         int length = 0;
-        for (Map.Entry<UTF8Char, String> e : listHuff) {
-            int difference = e.getValue().length() - length;
+        for (int i = 0; i < listHuff.size(); i++) {
+            int difference = lengths[i] - length;
             if (difference > 0) {
-                for (int i = 0; i < difference; i++) {
-                    output.write01("0");
-                }
-                output.write01("1");
-                length = e.getValue().length();
+                output.write(0, difference);
+                output.write(0b1, 1);
+                length = lengths[i];
             } else {
-                output.write01("10");
+                output.write(0b10, 2);
             }
-            output.write01(e.getValue());
-            if (e.getKey().isInvalid()) {
-                output.write01("10");
+            output.writeLong(codes[i], lengths[i]);
+            UTF8Char key = listHuff.get(i).getKey();
+            if (key.isInvalid()) {
+                output.write(0b10, 2);
             } else {
-                for (int i = 0; i < e.getKey().getBytes().length; i++) {
-                    output.write(e.getKey().getBytes()[i]);
+                for (byte b : key.getBytes()) {
+                    output.write(b);
                 }
             }
         }
-        output.write01("11");
+        output.write(0b11, 2);
+        Integer invalid = indexes.get(UTF8Char.getInvalidChar());
         for (UTF8Char c : listChars) {
-            String s = huff.get(c);
-            if (s != null) {
-                output.write01(s);
-
+            Integer i = indexes.get(c);
+            if (i != null) {
+                output.writeLong(codes[i], lengths[i]);
             } else {
-                output.write01(huff.get(UTF8Char.getInvalidChar()));
+                output.writeLong(codes[invalid], lengths[invalid]);
                 for (byte b : c.getBytes()) {
                     output.write(b);
                 }
@@ -151,76 +171,45 @@ class Type2Algorithm {
      * Uncompresses the compressed content using type2 algorithm
      *
      * @param content
-     * @return the original string
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
      */
-    static String unzip2(byte[] content) {
-        BitReader bitReader = new BitReader(content);
-        bitReader.advance(4);
-        while (bitReader.read(1) == 0 && !bitReader.isClosed())
+    static <T> T unzip2(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        BitReader bitReader = new BitReader(content, offset, length);
+        bitReader.skip(4);
+        while (bitReader.readBits(1) == 0 && !bitReader.isClosed())
             ;
 
-        int keyLength = 0;
-        Type2Trie01<UTF8Char> trie = new Type2Trie01<>();
-        Map<String, String> mmm = new HashMap<>();
-        while (!bitReader.isClosed()) {
-            if (bitReader.peek01("0")) {
-                while (bitReader.read(1) == 0 && !bitReader.isClosed()) {
-                    keyLength++;
-                }
-            } else if (bitReader.peek01("10")) {
-                bitReader.advance(2);
-            } else if (bitReader.peek01("11")) {
-                bitReader.advance(2);
-                break;
-            }
-            String key = bitReader.readAsString(keyLength);
-            if (bitReader.peek01("10")) {
-                bitReader.advance(2);
-                UTF8Char u = UTF8Char.getInvalidChar();
-                trie.add(key, u);
-                mmm.put(key, u.asString());
-            } else {
-                byte read = bitReader.read();
+        Type2Table table = Type2Table.read(bitReader);
 
-                int nExtraBytes = Utils.getNExtraBytes(read);
-                byte[] bytes = new byte[nExtraBytes + 1];
-                bytes[0] = read;
-                for (int i = 0; i < nExtraBytes; i++) {
-                    bytes[i + 1] = bitReader.read();
-                }
-                UTF8Char u = new UTF8Char(bytes);
-                trie.add(key, u);
-                mmm.put(key, u.asString());
-            }
-        }
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // grown as needed: sizing for the worst case, one-bit codes of 4-byte
+        // symbols, would take 32 times the payload
+        byte[] out = new byte[2 * length + 16];
+        int pos = 0;
         while (!bitReader.isClosed()) {
-            Type2Trie01.Scanner<UTF8Char> scanner = trie.scan(bitReader.read01Char());
-            while (!scanner.hasValue()) {
-                scanner.scan(bitReader.read01Char());
+            if (pos > out.length - 4) {
+                out = Arrays.copyOf(out, out.length << 1);
             }
-            UTF8Char value = scanner.getValue();
-            if (value.isInvalid()) {
-                byte read = bitReader.read();
-
-                int nExtraBytes = Utils.getNExtraBytes(read);
-                byte[] bytes = new byte[nExtraBytes + 1];
-                bytes[0] = read;
-                for (int i = 0; i < nExtraBytes; i++) {
-                    bytes[i + 1] = bitReader.read();
-                }
-                UTF8Char u = new UTF8Char(bytes);
-                for (byte b : u.getBytes()) {
-                    baos.write(b);
+            int symbol = table.decode(bitReader);
+            int symbolLength = table.getLength(symbol);
+            if (symbolLength == 1) {
+                out[pos++] = (byte) table.getValue(symbol);
+            } else if (symbolLength != Type2Table.ESCAPE) {
+                int value = table.getValue(symbol);
+                for (int shift = (symbolLength - 1) << 3; shift >= 0; shift -= 8) {
+                    out[pos++] = (byte) (value >>> shift);
                 }
             } else {
-                for (byte b : value.getBytes()) {
-                    baos.write(b);
+                byte read = bitReader.readByte();
+                out[pos++] = read;
+                for (int i = Utils.getNExtraBytes(read); i > 0; i--) {
+                    out[pos++] = bitReader.readByte();
                 }
             }
         }
-        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        return sink.accept(out, 0, pos);
     }
 
 }
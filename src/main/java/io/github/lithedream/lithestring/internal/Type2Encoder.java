@@ -0,0 +1,438 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Type2 encoder working on primitive arrays: characters are counted in an
+ * open-addressing table keyed by their UTF-8 bytes packed into an int, the
+ * Huffman tree is built with an array heap and codes are kept as integers.
+ *
+ * <p>
+ * The output is byte-identical to the one of the original object-based encoder
+ * ({@link Type2Huffer} over a {@code HashMap<UTF8Char, Integer>}): Huffman ties
+ * are broken by the {@code PriorityQueue} offer order, which is the iteration
+ * order of that {@code HashMap}. With distinct hash codes that order depends on
+ * nothing else, so a {@code HashMap} keyed by the same hash codes reproduces it.
+ * </p>
+ */
+class Type2Encoder {
+
+    private static final int ESCAPE = -1;
+    private static final int ESCAPE_HASH = UTF8Char.getInvalidChar().hashCode();
+
+    // distinct characters, in order of first occurrence; the key is the
+    // UTF8Char hash code, i.e. the UTF-8 bytes packed little-endian
+    private int[] keys = new int[32];
+    private int[] freqs = new int[32];
+    private int nSymbols;
+    private int[] slots = new int[64];
+    private int slotShift = 32 - 6;
+    private int escapes;
+
+    // Huffman entries (characters seen more than once, plus the escape), in
+    // HashMap iteration order
+    private int[] entries;
+    private int nEntries;
+
+    // code of every character; singletons use the escape code
+    private long[] codes;
+    private int[] lengths;
+    private long escapeCode;
+    private int escapeLength;
+
+    // entries in dictionary order: by code length, then Huffman tree order
+    private int[] dictionary;
+
+    // input of the last successful plan
+    private byte[] input;
+    private long bitLength;
+
+    /**
+     * Encodes well-formed UTF-8 input
+     *
+     * @param input UTF-8 bytes, not empty
+     * @return the compressed byte[], or {@code null} if the input is not
+     *         well-formed UTF-8
+     */
+    byte[] encode(byte[] input) {
+        return plan(input) ? write() : null;
+    }
+
+    /**
+     * Builds the code table for the input without writing anything, so that
+     * {@link #byteLength()} can be asked before deciding to {@link #write()}.
+     * An encoder can plan one input after the other, reusing its arrays.
+     *
+     * @param input UTF-8 bytes, not empty
+     * @return false if the input is not well-formed UTF-8
+     */
+    boolean plan(byte[] input) {
+        reset();
+        if (!count(input)) {
+            return false;
+        }
+        order();
+        huffman();
+        this.input = input;
+        this.bitLength = bitLength();
+        return true;
+    }
+
+    /**
+     * @return the exact size of the planned output, in bytes
+     */
+    int byteLength() {
+        return (int) ((bitLength + 7) >>> 3);
+    }
+
+    /**
+     * Writes the planned output
+     *
+     * @return the compressed byte[]
+     */
+    byte[] write() {
+        int spareBits = (int) (-bitLength & 7);
+        BitWriter output = new BitWriter(byteLength());
+        write(output, input, spareBits);
+        return output.toByteArray();
+    }
+
+    /**
+     * Exact size of the output without padding, from the code table and the
+     * frequencies
+     *
+     * @return the size in bits
+     */
+    private long bitLength() {
+        long bits = 4 + 1 + 2;
+        int length = 0;
+        for (int s : dictionary) {
+            int codeLength = s == ESCAPE ? escapeLength : lengths[s];
+            int difference = codeLength - length;
+            if (difference > 0) {
+                bits += difference + 1;
+                length = codeLength;
+            } else {
+                bits += 2;
+            }
+            bits += codeLength;
+            bits += s == ESCAPE ? 2 : utf8Length(keys[s]) << 3;
+        }
+        for (int s = 0; s < nSymbols; s++) {
+            bits += (long) freqs[s] * lengths[s];
+            if (freqs[s] == 1) {
+                bits += utf8Length(keys[s]) << 3;
+            }
+        }
+        return bits;
+    }
+
+    // the counting arrays are kept, so that an encoder can be reused
+    private void reset() {
+        if (nSymbols > 0) {
+            Arrays.fill(slots, 0);
+            Arrays.fill(freqs, 0, nSymbols, 0);
+            nSymbols = 0;
+        }
+        escapes = 0;
+        input = null;
+    }
+
+    private static int utf8Length(int key) {
+        return 1 + Utils.getNExtraBytes((byte) key);
+    }
+
+    private boolean count(byte[] input) {
+        int n = input.length;
+        int i = 0;
+        while (i < n) {
+            byte lead = input[i];
+            int nExtraBytes = Utils.getNExtraBytes(lead);
+            if ((nExtraBytes == 0 && lead < 0) || i + nExtraBytes >= n) {
+                return false;
+            }
+            int key = lead & 0xFF;
+            for (int k = 1; k <= nExtraBytes; k++) {
+                key |= (input[i + k] & 0xFF) << (k << 3);
+            }
+            int s = symbol(key);
+            freqs[s]++;
+            i += 1 + nExtraBytes;
+        }
+        for (int s = 0; s < nSymbols; s++) {
+            if (freqs[s] == 1) {
+                escapes++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the character, adding it if new
+     */
+    private int symbol(int key) {
+        int mask = slots.length - 1;
+        int slot = (key * 0x9E3779B9) >>> slotShift;
+        int s;
+        while ((s = slots[slot]) != 0) {
+            if (keys[s - 1] == key) {
+                return s - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (nSymbols == keys.length) {
+            keys = Arrays.copyOf(keys, nSymbols << 1);
+            freqs = Arrays.copyOf(freqs, nSymbols << 1);
+        }
+        keys[nSymbols] = key;
+        slots[slot] = ++nSymbols;
+        if (nSymbols << 1 > slots.length) {
+            rehash();
+        }
+        return nSymbols - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        slotShift--;
+        int mask = slots.length - 1;
+        for (int s = 0; s < nSymbols; s++) {
+            int slot = (keys[s] * 0x9E3779B9) >>> slotShift;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = s + 1;
+        }
+    }
+
+    private int lookup(int key) {
+        int mask = slots.length - 1;
+        int slot = (key * 0x9E3779B9) >>> slotShift;
+        while (keys[slots[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slots[slot] - 1;
+    }
+
+    /**
+     * Computes the iteration order the original HashMap would have had: all
+     * characters put in order of first occurrence, the ones seen once removed
+     * while iterating, then the escape put
+     */
+    private void order() {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int s = 0; s < nSymbols; s++) {
+            map.put(keys[s], s);
+        }
+        if (escapes > 0) {
+            for (Iterator<Integer> it = map.values().iterator(); it.hasNext();) {
+                if (freqs[it.next()] == 1) {
+                    it.remove();
+                }
+            }
+            map.put(ESCAPE_HASH, ESCAPE);
+        }
+        entries = new int[map.size()];
+        nEntries = 0;
+        for (int s : map.values()) {
+            entries[nEntries++] = s;
+        }
+    }
+
+    /**
+     * Builds the Huffman tree exactly as {@link Type2Huffer} does with its
+     * PriorityQueue, and assigns the codes
+     */
+    private void huffman() {
+        codes = new long[nSymbols];
+        lengths = new int[nSymbols];
+        dictionary = new int[nEntries];
+        long[] treeCodes = new long[nEntries];
+        int[] treeLengths = new int[nEntries];
+
+        if (nEntries == 1) {
+            dictionary[0] = 0;
+            treeCodes[0] = 1;
+            treeLengths[0] = 1;
+        } else {
+            int nodes = 2 * nEntries - 1;
+            int[] weight = new int[nodes];
+            int[] left = new int[nodes];
+            int[] right = new int[nodes];
+            for (int e = 0; e < nEntries; e++) {
+                weight[e] = entries[e] == ESCAPE ? escapes : freqs[entries[e]];
+            }
+
+            int[] heap = new int[nEntries];
+            int size = 0;
+            for (int e = 0; e < nEntries; e++) {
+                siftUp(heap, size++, e, weight);
+            }
+            int next = nEntries;
+            while (size > 1) {
+                int l = heap[0];
+                siftDown(heap, --size, heap[size], weight);
+                int r = heap[0];
+                siftDown(heap, --size, heap[size], weight);
+                weight[next] = weight[l] + weight[r];
+                left[next] = l;
+                right[next] = r;
+                siftUp(heap, size++, next, weight);
+                next++;
+            }
+
+            // depth-first, left (0) before right (1), as Type2Huffer.toMap
+            int[] stack = new int[nodes];
+            long[] stackCodes = new long[nodes];
+            int[] stackLengths = new int[nodes];
+            int top = 0;
+            stack[top++] = heap[0];
+            int leaves = 0;
+            while (top > 0) {
+                top--;
+                int node = stack[top];
+                long code = stackCodes[top];
+                int length = stackLengths[top];
+                if (node < nEntries) {
+                    dictionary[leaves] = node;
+                    treeCodes[leaves] = code;
+                    treeLengths[leaves] = length;
+                    leaves++;
+                } else {
+                    stack[top] = right[node];
+                    stackCodes[top] = (code << 1) | 1;
+                    stackLengths[top] = length + 1;
+                    top++;
+                    stack[top] = left[node];
+                    stackCodes[top] = code << 1;
+                    stackLengths[top] = length + 1;
+                    top++;
+                }
+            }
+        }
+
+        for (int i = 0; i < nEntries; i++) {
+            int s = entries[dictionary[i]];
+            if (s == ESCAPE) {
+                escapeCode = treeCodes[i];
+                escapeLength = treeLengths[i];
+            } else {
+                codes[s] = treeCodes[i];
+                lengths[s] = treeLengths[i];
+            }
+        }
+        for (int s = 0; s < nSymbols; s++) {
+            if (freqs[s] == 1) {
+                codes[s] = escapeCode;
+                lengths[s] = escapeLength;
+            }
+        }
+
+        // stable sort of the tree order by code length
+        int maxLength = 0;
+        for (int i = 0; i < nEntries; i++) {
+            maxLength = Math.max(maxLength, treeLengths[i]);
+        }
+        int[] starts = new int[maxLength + 2];
+        for (int i = 0; i < nEntries; i++) {
+            starts[treeLengths[i] + 1]++;
+        }
+        for (int l = 1; l < starts.length; l++) {
+            starts[l] += starts[l - 1];
+        }
+        int[] sorted = new int[nEntries];
+        for (int i = 0; i < nEntries; i++) {
+            sorted[starts[treeLengths[i]]++] = entries[dictionary[i]];
+        }
+        dictionary = sorted;
+    }
+
+    // same algorithm as java.util.PriorityQueue with Comparable elements
+    private static void siftUp(int[] heap, int k, int x, int[] weight) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = heap[parent];
+            if (weight[x] >= weight[e]) {
+                break;
+            }
+            heap[k] = e;
+            k = parent;
+        }
+        heap[k] = x;
+    }
+
+    private static void siftDown(int[] heap, int n, int x, int[] weight) {
+        if (n == 0) {
+            return;
+        }
+        int k = 0;
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < n && weight[c] > weight[heap[right]]) {
+                c = heap[child = right];
+            }
+            if (weight[x] <= weight[c]) {
+                break;
+            }
+            heap[k] = c;
+            k = child;
+        }
+        heap[k] = x;
+    }
+
+    private void write(BitWriter output, byte[] input, int spareBits) {
+        output.write(0b1010, 4);
+        output.write(0, spareBits);
+        output.write(0b1, 1);
+
+        int length = 0;
+        for (int s : dictionary) {
+            int codeLength = s == ESCAPE ? escapeLength : lengths[s];
+            int difference = codeLength - length;
+            if (difference > 0) {
+                output.write(0, difference);
+                output.write(0b1, 1);
+                length = codeLength;
+            } else {
+                output.write(0b10, 2);
+            }
+            if (s == ESCAPE) {
+                output.writeLong(escapeCode, escapeLength);
+                output.write(0b10, 2);
+            } else {
+                output.writeLong(codes[s], lengths[s]);
+                writeUTF8(output, keys[s]);
+            }
+        }
+        output.write(0b11, 2);
+
+        int n = input.length;
+        int i = 0;
+        while (i < n) {
+            int nExtraBytes = Utils.getNExtraBytes(input[i]);
+            int key = input[i] & 0xFF;
+            for (int k = 1; k <= nExtraBytes; k++) {
+                key |= (input[i + k] & 0xFF) << (k << 3);
+            }
+            int s = lookup(key);
+            output.writeLong(codes[s], lengths[s]);
+            if (freqs[s] == 1) {
+                writeUTF8(output, key);
+            }
+            i += 1 + nExtraBytes;
+        }
+    }
+
+    private static void writeUTF8(BitWriter output, int key) {
+        int nBytes = utf8Length(key);
+        for (int k = 0; k < nBytes; k++) {
+            output.write(key >>> (k << 3), 8);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+
+/**
+ * Multi-level lookup tables that decode a Type2 Huffman code in one or a few
+ * table reads instead of one bit at a time.
+ *
+ * <p>
+ * The root table is indexed by the next {@code rootBits} bits of the stream;
+ * each entry is either a symbol with its code length, or a pointer to a
+ * sub-table indexed by the following bits (codes are not canonical and may be
+ * long for skewed inputs, so tables are nested as deep as needed, at most
+ * {@value #MAX_BITS} bits per level).
+ * </p>
+ */
+class Type2Table {
+
+    private static final int MAX_BITS = 10;
+
+    /** Symbol length used for the escape symbol: a raw UTF-8 character follows */
+    static final int ESCAPE = 0;
+
+    private final int[] values;
+    private final byte[] lengths;
+    private int[] table;
+    private int tableSize;
+    private int rootBits;
+
+    // binary trie of the codes, used only while building the tables
+    private int[] children;
+    private int nodes;
+
+    private Type2Table(int nSymbols) {
+        values = new int[nSymbols];
+        lengths = new byte[nSymbols];
+    }
+
+    /**
+     * Reads the dictionary header of a Type2 stream and builds its tables
+     *
+     * @param bitReader positioned right after the "1010" + padding + "1" prefix
+     * @return the decoding tables
+     */
+    static Type2Table read(BitReader bitReader) {
+        long[] codes = new long[16];
+        int[] codeLengths = new int[16];
+        int[] values = new int[16];
+        byte[] lengths = new byte[16];
+        int n = 0;
+
+        int keyLength = 0;
+        while (!bitReader.isClosed()) {
+            if (bitReader.peekBits(1) == 0) {
+                while (bitReader.readBits(1) == 0 && !bitReader.isClosed()) {
+                    keyLength++;
+                }
+            } else if (bitReader.peekBits(2) == 0b10) {
+                bitReader.skip(2);
+            } else {
+                bitReader.skip(2);
+                break;
+            }
+            if (n == codes.length) {
+                codes = Arrays.copyOf(codes, n << 1);
+                codeLengths = Arrays.copyOf(codeLengths, n << 1);
+                values = Arrays.copyOf(values, n << 1);
+                lengths = Arrays.copyOf(lengths, n << 1);
+            }
+            codes[n] = bitReader.readLong(keyLength);
+            codeLengths[n] = keyLength;
+            if (bitReader.peekBits(2) == 0b10) {
+                bitReader.skip(2);
+                lengths[n] = ESCAPE;
+            } else {
+                int value = bitReader.readBits(8);
+                int nExtraBytes = Utils.getNExtraBytes((byte) value);
+                for (int i = 0; i < nExtraBytes; i++) {
+                    value = (value << 8) | bitReader.readBits(8);
+                }
+                values[n] = value;
+                lengths[n] = (byte) (nExtraBytes + 1);
+            }
+            n++;
+        }
+        if (n == 0) {
+            throw new IllegalArgumentException("Type2 content without symbols");
+        }
+
+        Type2Table t = new Type2Table(n);
+        System.arraycopy(values, 0, t.values, 0, n);
+        System.arraycopy(lengths, 0, t.lengths, 0, n);
+        t.build(codes, codeLengths, n);
+        return t;
+    }
+
+    private void build(long[] codes, int[] codeLengths, int n) {
+        int totalBits = 0;
+        int minCodeLength = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            totalBits += codeLengths[i];
+            minCodeLength = Math.min(minCodeLength, codeLengths[i]);
+        }
+        if (minCodeLength == 0) {
+            throw new IllegalArgumentException("Type2 content with an empty code");
+        }
+        children = new int[2 * (totalBits + 1)];
+        nodes = 1;
+        for (int i = 0; i < n; i++) {
+            int node = 0;
+            for (int bit = codeLengths[i]; bit-- > 0;) {
+                int slot = 2 * node + (int) ((codes[i] >>> bit) & 1);
+                if (bit == 0) {
+                    children[slot] = ~i;
+                } else {
+                    if (children[slot] <= 0) {
+                        children[slot] = nodes++;
+                    }
+                    node = children[slot];
+                }
+            }
+        }
+        table = new int[64];
+        int root = buildTable(0);
+        rootBits = ~root & 0xF;
+        children = null;
+    }
+
+    private int height(int node) {
+        int h = 0;
+        for (int b = 0; b < 2; b++) {
+            int child = children[2 * node + b];
+            h = Math.max(h, child > 0 ? 1 + height(child) : child < 0 ? 1 : 0);
+        }
+        return h;
+    }
+
+    /**
+     * Builds the table for the codes below {@code node}
+     *
+     * @return a pointer entry to the table
+     */
+    private int buildTable(int node) {
+        int bits = Math.min(height(node), MAX_BITS);
+        int offset = tableSize;
+        tableSize += 1 << bits;
+        if (tableSize > table.length) {
+            table = Arrays.copyOf(table, Math.max(table.length << 1, tableSize));
+        }
+        fill(node, 0, bits, offset, 0);
+        return ~((offset << 4) | bits);
+    }
+
+    private void fill(int node, int depth, int bits, int offset, int prefix) {
+        for (int b = 0; b < 2; b++) {
+            int child = children[2 * node + b];
+            int p = (prefix << 1) | b;
+            int d = depth + 1;
+            if (child < 0) {
+                int span = bits - d;
+                int from = offset + (p << span);
+                Arrays.fill(table, from, from + (1 << span), (~child << 7) | d);
+            } else if (child > 0) {
+                if (d == bits) {
+                    int pointer = buildTable(child);
+                    table[offset + p] = pointer;
+                } else {
+                    fill(child, d, bits, offset, p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one code from the stream
+     *
+     * @param bitReader
+     * @return the index of the decoded symbol
+     */
+    int decode(BitReader bitReader) {
+        int bits = rootBits;
+        int e = table[bitReader.peekBits(bits)];
+        while (e < 0) {
+            bitReader.skip(bits);
+            int pointer = ~e;
+            bits = pointer & 0xF;
+            e = table[(pointer >>> 4) + bitReader.peekBits(bits)];
+        }
+        if (e == 0) {
+            throw new IllegalArgumentException("Invalid Type2 code");
+        }
+        bitReader.skip(e & 0x7F);
+        return e >>> 7;
+    }
+
+    /**
+     * @param symbol
+     * @return the UTF-8 bytes of the symbol, packed big-endian into an int
+     */
+    int getValue(int symbol) {
+        return values[symbol];
+    }
+
+    /**
+     * @param symbol
+     * @return how many UTF-8 bytes the symbol has, or {@link #ESCAPE}
+     */
+    int getLength(int symbol) {
+        return lengths[symbol];
+    }
+}
@@ -3,13 +3,30 @@ package io.github.lithedream.lithestring.internal;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 class Type3Algorithm {
+    private static final int HEADER = 0b10111111;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    // the 10 bytes written by GZIPOutputStream on this JVM (the OS byte differs
+    // between JDK versions), so that the framing written here is identical
+    private static final byte[] GZIP_HEADER = gzipHeader();
+
+    private static byte[] gzipHeader() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            new GZIPOutputStream(output).close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(output.toByteArray(), 10);
+    }
+
     /**
      * Compresses the string with 1 byte of header + standard gzip encoding of the
      * UTF-8 content
@@ -18,26 +35,7 @@ class Type3Algorithm {
      * @return the compressed byte[]
      */
     static byte[] z3(String input) {
-        if (input == null) {
-            return null;
-        }
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        output.write(0b10111111);
-        try {
-            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(output), StandardCharsets.UTF_8)) {
-                writer.write(input);
-            }
-        } catch (IOException e) {
-            throw new IllegalArgumentException(e);
-        } finally {
-            try {
-                output.close();
-            } catch (IOException e) {
-                throw new IllegalArgumentException(e);
-            }
-        }
-
-        return output.toByteArray();
+        return z3UTF8(input != null ? Utf8Strings.utf8(input) : null);
     }
 
     /**
@@ -50,33 +48,90 @@ class Type3Algorithm {
         if (input == null) {
             return null;
         }
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        output.write(0b10111111);
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
         try {
-            try (GZIPOutputStream writer = new GZIPOutputStream(output)) {
-                writer.write(input, 0, input.length);
-            }
-        } catch (IOException e) {
-            throw new IllegalArgumentException(e);
+            int deflated = context.deflate(input, 0, input.length);
+
+            int headerLength = 1 + GZIP_HEADER.length;
+            byte[] output = new byte[headerLength + deflated + GZIP_TRAILER_LENGTH];
+            output[0] = (byte) HEADER;
+            System.arraycopy(GZIP_HEADER, 0, output, 1, GZIP_HEADER.length);
+            System.arraycopy(context.buffer(), 0, output, headerLength, deflated);
+            CRC32 crc = context.crc;
+            crc.reset();
+            crc.update(input, 0, input.length);
+            writeIntLE(output, headerLength + deflated, (int) crc.getValue());
+            writeIntLE(output, headerLength + deflated + 4, input.length);
+            reusable = true;
+            return output;
         } finally {
-            try {
-                output.close();
-            } catch (IOException e) {
-                throw new IllegalArgumentException(e);
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
             }
         }
-        return output.toByteArray();
     }
 
     /**
      * Uncompresses the compressed content using type3 algorithm
      *
      * @param content
-     * @return the original string
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
      */
-    static String unzip3(byte[] content) {
-        ByteArrayInputStream bais = new ByteArrayInputStream(content);
-        bais.read();
+    static <T> T unzip3(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        int end = offset + length;
+        // a single member without optional header fields, as written by z3UTF8
+        if (length < 1 + GZIP_HEADER.length + GZIP_TRAILER_LENGTH || content[offset + 1] != GZIP_HEADER[0]
+                || content[offset + 2] != GZIP_HEADER[1] || content[offset + 3] != GZIP_HEADER[2]
+                || content[offset + 4] != 0) {
+            return unzip3Stream(content, offset, length, sink);
+        }
+        int deflated = length - 1 - GZIP_HEADER.length;
+        int crcValue = readIntLE(content, end - 8);
+        int size = readIntLE(content, end - 4);
+        int sizeHint = DeflateContext.sizeHint(size, deflated);
+
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int pos = context.inflate(content, offset + 1 + GZIP_HEADER.length, deflated, sizeHint);
+            byte[] buffer = context.buffer();
+            if (context.remaining() != GZIP_TRAILER_LENGTH) {
+                // concatenated members
+                reusable = true;
+                return unzip3Stream(content, offset, length, sink);
+            }
+            CRC32 crc = context.crc;
+            crc.reset();
+            crc.update(buffer, 0, pos);
+            if ((int) crc.getValue() != crcValue || pos != size) {
+                throw new IllegalArgumentException("Corrupt type3 trailer");
+            }
+            T result = sink.accept(buffer, 0, pos);
+            reusable = true;
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+
+    /**
+     * Uncompresses through GZIPInputStream, for gzip framing not written by
+     * z3UTF8
+     */
+    private static <T> T unzip3Stream(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        ByteArrayInputStream bais = new ByteArrayInputStream(content, offset + 1, length - 1);
         try (GZIPInputStream gis = new GZIPInputStream(bais)) {
             byte[] buffer = new byte[1024];
             ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -88,9 +143,22 @@ class Type3Algorithm {
 
             gis.close();
             out.close();
-            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            byte[] bytes = out.toByteArray();
+            return sink.accept(bytes, 0, bytes.length);
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
+
+    private static void writeIntLE(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) value;
+        bytes[pos + 1] = (byte) (value >>> 8);
+        bytes[pos + 2] = (byte) (value >>> 16);
+        bytes[pos + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8 | (bytes[pos + 2] & 0xFF) << 16
+                | (bytes[pos + 3] & 0xFF) << 24;
+    }
 }
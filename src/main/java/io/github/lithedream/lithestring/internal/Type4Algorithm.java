@@ -0,0 +1,202 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+class Type4Algorithm {
+
+    static final int HEADER = 0b10111110;
+
+    /**
+     * Lower bound of the length of z4UTF8 for non-empty input: header byte,
+     * length varint and a deflate block holding at least one literal
+     */
+    static final int MIN_LENGTH = 1 + 1 + 3;
+
+    /**
+     * Compresses the string with 1 byte of header + the UTF-8 length as a varint
+     * + raw deflate of the UTF-8 content: type3 without the 18 bytes of gzip
+     * header and trailer
+     *
+     * @param input
+     * @return the compressed byte[]
+     */
+    static byte[] z4(String input) {
+        return z4UTF8(input != null ? Utf8Strings.utf8(input) : null);
+    }
+
+    /**
+     * Like z4, but with an UTF-8 encoded string as input
+     *
+     * @param input
+     * @return the compressed byte[]
+     */
+    static byte[] z4UTF8(byte[] input) {
+        if (input == null) {
+            return null;
+        }
+        if (input.length == 0) {
+            return new byte[] {};
+        }
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int deflated = context.deflate(input, 0, input.length);
+            int headerLength = 1 + Utils.varintLength(input.length);
+            byte[] output = new byte[headerLength + deflated];
+            output[0] = (byte) HEADER;
+            Utils.writeVarint(output, 1, input.length);
+            System.arraycopy(context.buffer(), 0, output, headerLength, deflated);
+            reusable = true;
+            return output;
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+
+    /**
+     * Writes what zipUTF8 returns for the bytes remaining in src, if they are
+     * more than 512, into dst: type4 if shorter than the input, the input
+     * otherwise. The deflate stream goes straight into heap buffers with room
+     * for the input, otherwise through the scratch buffer. The position of src
+     * is not moved.
+     *
+     * @param src UTF-8 input
+     * @param dst destination; its position is advanced past the written bytes
+     * @return the number of bytes written
+     * @throws BufferOverflowException if they do not fit, leaving dst unchanged
+     */
+    static int z4UTF8(ByteBuffer src, ByteBuffer dst) {
+        int size = src.remaining();
+        int headerLength = 1 + Utils.varintLength(size);
+        // the longest deflate stream still shorter than the input
+        int limit = size - headerLength - 1;
+        if (limit >= 0) {
+            DeflateContext context = DeflateContext.acquire();
+            boolean reusable = false;
+            try {
+                boolean inPlace = dst.hasArray() && dst.remaining() >= size;
+                int start = inPlace ? dst.arrayOffset() + dst.position() : 0;
+                int deflated = context.deflate(src, inPlace ? dst.array() : null, start + headerLength, limit);
+                reusable = true;
+                if (deflated >= 0) {
+                    int length = headerLength + deflated;
+                    if (dst.remaining() < length) {
+                        throw new BufferOverflowException();
+                    }
+                    byte[] header = inPlace ? dst.array() : new byte[headerLength];
+                    header[start] = (byte) HEADER;
+                    Utils.writeVarint(header, start + 1, size);
+                    if (inPlace) {
+                        dst.position(dst.position() + length);
+                    } else {
+                        dst.put(header);
+                        dst.put(context.buffer(), 0, deflated);
+                    }
+                    return length;
+                }
+            } finally {
+                if (reusable) {
+                    DeflateContext.release(context);
+                } else {
+                    DeflateContext.discard(context);
+                }
+            }
+        }
+        if (dst.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        dst.put(src.duplicate());
+        return size;
+    }
+
+    /**
+     * Uncompresses the compressed content using type4 algorithm
+     *
+     * @param content
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
+     */
+    static <T> T unzip4(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        int size = Utils.readVarint(content, offset + 1, offset + length);
+        int headerLength = 1 + Utils.varintLength(size);
+        int deflated = length - headerLength;
+
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int pos = context.inflate(content, offset + headerLength, deflated, DeflateContext.sizeHint(size, deflated));
+            if (pos != size || context.remaining() != 0) {
+                throw new IllegalArgumentException("Corrupt type4 content");
+            }
+            T result = sink.accept(context.buffer(), 0, pos);
+            reusable = true;
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+
+    /**
+     * Uncompresses type4 content, the bytes remaining in src, into dst through
+     * the scratch buffer, without moving the position of src
+     *
+     * @param src type4 content; heap buffers are read in place, direct ones in
+     *            chunks
+     * @param dst destination; its position is advanced past the original UTF-8
+     *            bytes
+     * @return the number of bytes written
+     * @throws BufferOverflowException if they do not fit, leaving dst unchanged
+     */
+    static int unzip4(ByteBuffer src, ByteBuffer dst) {
+        ByteBuffer in = src.duplicate();
+        in.get();
+        byte[] varint = new byte[5];
+        int n = 0;
+        while (n < varint.length && in.hasRemaining()) {
+            varint[n] = in.get();
+            if (varint[n++] >= 0) {
+                break;
+            }
+        }
+        int size = Utils.readVarint(varint, 0, n);
+        if (!DeflateContext.isPlausible(size, in.remaining())) {
+            throw new IllegalArgumentException("Corrupt type4 content");
+        }
+        if (dst.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        int start = dst.position();
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            if (context.inflate(in, dst, size) != size) {
+                throw new IllegalArgumentException("Corrupt type4 content");
+            }
+            reusable = true;
+            return size;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                dst.position(start);
+                DeflateContext.discard(context);
+            }
+        }
+    }
+}
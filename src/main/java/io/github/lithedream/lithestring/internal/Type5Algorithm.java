@@ -0,0 +1,135 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DataFormatException;
+
+class Type5Algorithm {
+
+    private static final int HEADER = 0b10111101;
+
+    /**
+     * Number of dictionary ids: an id is stored in one byte
+     */
+    static final int MAX_DICTIONARIES = 256;
+
+    private static final AtomicReferenceArray<byte[]> DICTIONARIES = new AtomicReferenceArray<>(MAX_DICTIONARIES);
+
+    /**
+     * Registers a preset dictionary under an id. Registering the same content
+     * again under the same id does nothing.
+     *
+     * @param id         from 0 to 255
+     * @param dictionary content likely to appear in the strings; deflate only
+     *                   uses its last 32 KB
+     * @throws IllegalArgumentException if the id is out of range, the
+     *                                  dictionary is empty, or the id is
+     *                                  already taken by another dictionary
+     */
+    static void register(int id, byte[] dictionary) {
+        if (id < 0 || id >= MAX_DICTIONARIES) {
+            throw new IllegalArgumentException(
+                    "Dictionary id " + id + " not valid. Valid values are 0-" + (MAX_DICTIONARIES - 1));
+        }
+        if (dictionary == null || dictionary.length == 0) {
+            throw new IllegalArgumentException("Dictionary " + id + " is empty");
+        }
+        byte[] copy = Arrays.copyOf(dictionary, dictionary.length);
+        if (!DICTIONARIES.compareAndSet(id, null, copy) && !Arrays.equals(DICTIONARIES.get(id), copy)) {
+            throw new IllegalArgumentException("Dictionary id " + id + " is already registered");
+        }
+    }
+
+    /**
+     * @param id
+     * @return the dictionary registered under the id
+     * @throws IllegalArgumentException if no dictionary has that id
+     */
+    static byte[] dictionary(int id) {
+        byte[] dictionary = id >= 0 && id < MAX_DICTIONARIES ? DICTIONARIES.get(id) : null;
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Dictionary id " + id + " is not registered");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Compresses UTF-8 input with 1 byte of header + 1 byte of dictionary id +
+     * the UTF-8 length as a varint + raw deflate primed with the preset
+     * dictionary
+     *
+     * @param input
+     * @param id    a registered dictionary id
+     * @return the compressed byte[]
+     */
+    static byte[] z5UTF8(byte[] input, int id) {
+        byte[] dictionary = dictionary(id);
+        if (input == null) {
+            return null;
+        }
+        if (input.length == 0) {
+            return new byte[] {};
+        }
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int deflated = context.deflate(input, 0, input.length, dictionary);
+            int headerLength = 2 + Utils.varintLength(input.length);
+            byte[] output = new byte[headerLength + deflated];
+            output[0] = (byte) HEADER;
+            output[1] = (byte) id;
+            Utils.writeVarint(output, 2, input.length);
+            System.arraycopy(context.buffer(), 0, output, headerLength, deflated);
+            reusable = true;
+            return output;
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+
+    /**
+     * Uncompresses the compressed content using type5 algorithm, with the
+     * dictionary named in its header
+     *
+     * @param content
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
+     * @throws IllegalArgumentException if the dictionary is not registered
+     */
+    static <T> T unzip5(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        if (length < 2) {
+            throw new IllegalArgumentException("Truncated type5 content");
+        }
+        byte[] dictionary = dictionary(content[offset + 1] & 0xFF);
+        int size = Utils.readVarint(content, offset + 2, offset + length);
+        int headerLength = 2 + Utils.varintLength(size);
+        int deflated = length - headerLength;
+
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int pos = context.inflate(content, offset + headerLength, deflated, DeflateContext.sizeHint(size, deflated),
+                    dictionary);
+            if (pos != size || context.remaining() != 0) {
+                throw new IllegalArgumentException("Corrupt type5 content");
+            }
+            T result = sink.accept(context.buffer(), 0, pos);
+            reusable = true;
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+}
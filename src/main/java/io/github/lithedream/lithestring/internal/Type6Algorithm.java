@@ -0,0 +1,204 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class Type6Algorithm {
+
+    private static final int HEADER = 0b10110;
+    private static final int HEADER_LENGTH = 5;
+    private static final int TABLE_HEADER = 0b10111100;
+
+    /**
+     * Number of user table ids: an id is stored in one byte
+     */
+    static final int MAX_TABLES = 256;
+
+    /**
+     * Byte frequencies of English text and ASCII identifiers, per 10000 bytes;
+     * every other byte is escaped
+     */
+    private static final int[] ENGLISH_FREQUENCIES = new int[256];
+    private static final int ENGLISH_ESCAPE_FREQUENCY = 20;
+    static {
+        String letters = "etaoinsrhdlcumwfgypbvkxjqz";
+        int[] lower = { 1000, 730, 650, 610, 580, 570, 520, 490, 480, 340, 330, 230, 220, 200, 160, 180, 160, 140,
+                160, 120, 80, 60, 15, 10, 10, 8 };
+        int[] upper = { 50, 80, 80, 30, 70, 35, 70, 40, 40, 40, 35, 60, 20, 45, 35, 30, 30, 15, 45, 40, 15, 15, 5, 15,
+                3, 5 };
+        for (int i = 0; i < letters.length(); i++) {
+            ENGLISH_FREQUENCIES[letters.charAt(i)] = lower[i];
+            ENGLISH_FREQUENCIES[Character.toUpperCase(letters.charAt(i))] = upper[i];
+        }
+        int[] digits = { 60, 60, 45, 30, 25, 25, 20, 20, 20, 25 };
+        for (int i = 0; i < 10; i++) {
+            ENGLISH_FREQUENCIES['0' + i] = digits[i];
+        }
+        String punctuation = " .,'\"-_:;!?()/@#$%&*+=<>[]{}\\^`|~\n\t\r";
+        int[] others = { 1800, 110, 100, 25, 30, 30, 20, 20, 5, 8, 8, 10, 10, 20, 3, 3, 3, 3, 5, 3, 3, 10, 2, 2, 3, 3,
+                5, 5, 2, 1, 1, 2, 1, 30, 5, 2 };
+        for (int i = 0; i < punctuation.length(); i++) {
+            ENGLISH_FREQUENCIES[punctuation.charAt(i)] = others[i];
+        }
+    }
+
+    static final StaticHuffmanTable ENGLISH = new StaticHuffmanTable(ENGLISH_FREQUENCIES, ENGLISH_ESCAPE_FREQUENCY);
+
+    private static final AtomicReferenceArray<StaticHuffmanTable> TABLES = new AtomicReferenceArray<>(MAX_TABLES);
+
+    /**
+     * Registers a Huffman table built from byte frequencies under an id. The
+     * escape gets the smallest non-zero frequency. Registering frequencies giving
+     * the same codes again under the same id does nothing.
+     *
+     * @param id          from 0 to 255
+     * @param frequencies 256 non-negative frequencies, one per byte value; bytes
+     *                    with frequency 0 are escaped
+     * @throws IllegalArgumentException if the id is out of range or already
+     *                                  taken by another table, or the
+     *                                  frequencies are not valid
+     */
+    static void register(int id, int[] frequencies) {
+        if (id < 0 || id >= MAX_TABLES) {
+            throw new IllegalArgumentException("Table id " + id + " not valid. Valid values are 0-" + (MAX_TABLES - 1));
+        }
+        if (frequencies == null || frequencies.length != 256) {
+            throw new IllegalArgumentException("A table needs 256 frequencies");
+        }
+        int minFrequency = Integer.MAX_VALUE;
+        for (int f : frequencies) {
+            if (f < 0) {
+                throw new IllegalArgumentException("Negative frequency " + f);
+            }
+            if (f > 0) {
+                minFrequency = Math.min(minFrequency, f);
+            }
+        }
+        if (minFrequency == Integer.MAX_VALUE) {
+            minFrequency = 1;
+        }
+        StaticHuffmanTable table = new StaticHuffmanTable(frequencies, minFrequency);
+        if (!TABLES.compareAndSet(id, null, table) && !TABLES.get(id).sameCodes(table)) {
+            throw new IllegalArgumentException("Table id " + id + " is already registered");
+        }
+    }
+
+    /**
+     * @param id
+     * @return the table registered under the id
+     * @throws IllegalArgumentException if no table has that id
+     */
+    static StaticHuffmanTable table(int id) {
+        StaticHuffmanTable table = id >= 0 && id < MAX_TABLES ? TABLES.get(id) : null;
+        if (table == null) {
+            throw new IllegalArgumentException("Table id " + id + " is not registered");
+        }
+        return table;
+    }
+
+    /**
+     * Compresses the string with the built-in English table: only the codes are
+     * written, after a 5-bit header and the padding
+     *
+     * @param input
+     * @return the compressed byte[]
+     */
+    static byte[] z6(String input) {
+        return z6UTF8(input != null ? Utf8Strings.utf8(input) : null);
+    }
+
+    /**
+     * Like z6, but with an UTF-8 encoded string as input
+     *
+     * @param input
+     * @return the compressed byte[]
+     */
+    static byte[] z6UTF8(byte[] input) {
+        if (input == null) {
+            return null;
+        }
+        if (input.length == 0) {
+            return new byte[] {};
+        }
+        return write(input, ENGLISH, ENGLISH.bitLength(input), -1);
+    }
+
+    /**
+     * @param input not empty
+     * @return the exact length of z6UTF8(input)
+     */
+    static int z6Length(byte[] input) {
+        return byteLength(ENGLISH.bitLength(input), HEADER_LENGTH);
+    }
+
+    /**
+     * Compresses UTF-8 input with a registered table: 1 byte of header, 1 byte
+     * of table id, then padding and the codes
+     *
+     * @param input
+     * @param id    a registered table id
+     * @return the compressed byte[]
+     */
+    static byte[] z6UTF8(byte[] input, int id) {
+        StaticHuffmanTable table = table(id);
+        if (input == null) {
+            return null;
+        }
+        if (input.length == 0) {
+            return new byte[] {};
+        }
+        return write(input, table, table.bitLength(input), id);
+    }
+
+    // the padding goes between the header and the payload: zeros then a 1
+    private static int byteLength(long payloadBits, int headerBits) {
+        return (int) ((headerBits + 1 + payloadBits + 7) >>> 3);
+    }
+
+    private static byte[] write(byte[] input, StaticHuffmanTable table, long payloadBits, int id) {
+        int headerBits = id < 0 ? HEADER_LENGTH : 16;
+        int length = byteLength(payloadBits, headerBits);
+        BitWriter output = new BitWriter(length);
+        if (id < 0) {
+            output.write(HEADER, HEADER_LENGTH);
+        } else {
+            output.write(TABLE_HEADER, 8);
+            output.write(id, 8);
+        }
+        output.write(0, (int) ((long) length * 8 - headerBits - 1 - payloadBits));
+        output.write(0b1, 1);
+        table.write(output, input);
+        return output.toByteArray();
+    }
+
+    /**
+     * Uncompresses the compressed content using type6 algorithm, with the
+     * built-in table or the registered one named in its header
+     *
+     * @param content
+     * @param offset  start of the compressed bytes
+     * @param length  number of compressed bytes
+     * @param sink    receives the original UTF-8 bytes
+     * @return the result of the sink
+     * @throws IllegalArgumentException if the table is not registered
+     */
+    static <T> T unzip6(byte[] content, int offset, int length, Utf8Sink<T> sink) {
+        StaticHuffmanTable table;
+        BitReader bitReader = new BitReader(content, offset, length);
+        if ((content[offset] & 0xFF) == TABLE_HEADER) {
+            if (length < 2) {
+                throw new IllegalArgumentException("Truncated type6 content");
+            }
+            table = table(content[offset + 1] & 0xFF);
+            bitReader.skip(16);
+        } else {
+            table = ENGLISH;
+            bitReader.skip(HEADER_LENGTH);
+        }
+        while (bitReader.readBits(1) == 0 && !bitReader.isClosed())
+            ;
+
+        byte[] out = new byte[table.maxDecodedLength(bitReader.bitsLeft())];
+        int decoded = table.decode(bitReader, out);
+        return sink.accept(out, 0, decoded);
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * The UTF-8 bytes of compressed content, decoded from the start only as far as
+ * needed.
+ *
+ * <p>
+ * Raw UTF-8 content is read in place. Type4 content is inflated by prefixes of
+ * doubling size, from the start each time, so that no zlib state is held
+ * between calls and the total work stays within twice a full inflate. Block
+ * content is decoded one block at a time. The other types are decoded whole on
+ * first use, their input being at most 512 bytes (type3 and type5 are only
+ * produced on request).
+ * </p>
+ */
+final class Utf8Prefix {
+
+    private static final int RAW = 0;
+    private static final int TYPE4 = 1;
+    private static final int WHOLE = 2;
+    private static final int BLOCKS = 3;
+
+    private final byte[] content;
+    private final int offset;
+    private final int length;
+    private final int kind;
+    private final BlockCodec.Index blocks;
+    private int nextBlock;
+
+    // the decoded bytes are bytes[start, end); a prefix of them until complete
+    byte[] bytes;
+    int start;
+    int end;
+    boolean complete;
+    // from a length header or a block index, or -1
+    final int utf16Length;
+
+    Utf8Prefix(byte[] content, int offset, int length) {
+        int utf16Length = -1;
+        if (LengthPrefix.isWrapped(content, offset, length)) {
+            // the lengths are checked by LitheStringAlgorithm.unzip only
+            utf16Length = LengthPrefix.utf16Length(content, offset, length);
+            int inner = LengthPrefix.innerOffset(content, offset, length);
+            length -= inner - offset;
+            offset = inner;
+            if (LengthPrefix.isWrapped(content, offset, length)) {
+                throw new IllegalArgumentException("Nested length header");
+            }
+        }
+        this.content = content;
+        this.offset = offset;
+        this.length = length;
+        int header = length == 0 ? 0 : content[offset] & 0xFF;
+        BlockCodec.Index index = null;
+        if (header == 0b10111110) {
+            kind = TYPE4;
+            bytes = new byte[0];
+        } else if (header == BlockCodec.HEADER) {
+            kind = BLOCKS;
+            index = new BlockCodec.Index(content, offset, length);
+            bytes = new byte[0];
+            complete = index.blocks() == 0;
+            utf16Length = index.length();
+        } else if ((header & 0xC0) == 0b10000000) {
+            kind = WHOLE;
+            bytes = new byte[0];
+        } else {
+            kind = RAW;
+            bytes = content;
+            start = offset;
+            end = offset + length;
+            complete = true;
+        }
+        this.blocks = index;
+        this.utf16Length = utf16Length;
+    }
+
+    /**
+     * Decodes more bytes, keeping those decoded before where they are
+     *
+     * @return false if all the bytes were decoded already
+     */
+    boolean extend() {
+        if (complete) {
+            return false;
+        }
+        if (kind == WHOLE) {
+            bytes = LitheStringAlgorithm.unzip(content, offset, length, Utf8Sink.BYTES);
+            end = bytes.length;
+            complete = true;
+            return true;
+        }
+        if (kind == BLOCKS) {
+            int blockEnd = blocks.utf8End(nextBlock);
+            if (bytes.length < blockEnd) {
+                long capacity = Math.max(blockEnd, 2L * bytes.length);
+                bytes = Arrays.copyOf(bytes, (int) Math.min(blocks.utf8Length(), capacity));
+            }
+            blocks.unzip(nextBlock, nextBlock + 1, bytes);
+            end = blockEnd;
+            complete = ++nextBlock == blocks.blocks();
+            return true;
+        }
+        int size = Utils.readVarint(content, offset + 1, offset + length);
+        int headerLength = 1 + Utils.varintLength(size);
+        int limit = (int) Math.min(size, Math.max(1024, 2L * end));
+        DeflateContext context = DeflateContext.acquire();
+        boolean reusable = false;
+        try {
+            int n = context.inflatePrefix(content, offset + headerLength, length - headerLength, limit);
+            if (n < limit || (n == size && context.remaining() != 0)) {
+                throw new IllegalArgumentException("Corrupt type4 content");
+            }
+            bytes = Arrays.copyOf(context.buffer(), n);
+            end = n;
+            complete = n == size;
+            reusable = true;
+            return true;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (reusable) {
+                DeflateContext.release(context);
+            } else {
+                DeflateContext.discard(context);
+            }
+        }
+    }
+
+    /**
+     * @param count bytes wanted
+     * @return true if at least count bytes are decoded, false if there are fewer
+     */
+    boolean ensure(int count) {
+        while (end - start < count) {
+            if (!extend()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the whole decoded string
+     */
+    String decode() {
+        return LitheStringAlgorithm.unzip(content, offset, length);
+    }
+}
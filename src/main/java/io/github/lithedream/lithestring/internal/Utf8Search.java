@@ -0,0 +1,132 @@
+package io.github.lithedream.lithestring.internal;
+
+/**
+ * String tests on the UTF-8 bytes of compressed content, decoded by
+ * {@link Utf8Prefix} only until the answer is known.
+ *
+ * <p>
+ * UTF-8 is self-synchronizing: the bytes of a well-formed pattern match the
+ * decoded bytes exactly where its chars match the decoded String, even around
+ * malformed bytes, which decode to U+FFFD without taking the lead byte of the
+ * following char. Patterns holding U+FFFD or unpaired surrogates, whose bytes
+ * do not tell, are tested on the decoded String.
+ * </p>
+ */
+final class Utf8Search {
+
+    private Utf8Search() {
+    }
+
+    // the UTF-8 bytes of s, or null if they cannot be matched as bytes
+    private static byte[] pattern(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\uFFFD') {
+                return null;
+            }
+            if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++;
+                } else {
+                    return null;
+                }
+            }
+        }
+        return Utf8Strings.utf8(s);
+    }
+
+    static boolean startsWith(byte[] content, int offset, int length, String prefix) {
+        byte[] pattern = pattern(prefix);
+        Utf8Prefix utf8 = new Utf8Prefix(content, offset, length);
+        if (pattern == null) {
+            return utf8.decode().startsWith(prefix);
+        }
+        // a mismatch in the first decoded prefix ends it
+        int checked = 0;
+        while (checked < pattern.length) {
+            if (utf8.end - utf8.start == checked && !utf8.extend()) {
+                return false;
+            }
+            int limit = Math.min(pattern.length, utf8.end - utf8.start);
+            for (int i = checked; i < limit; i++) {
+                if (utf8.bytes[utf8.start + i] != pattern[i]) {
+                    return false;
+                }
+            }
+            checked = limit;
+        }
+        return true;
+    }
+
+    static boolean endsWith(byte[] content, int offset, int length, String suffix) {
+        byte[] pattern = pattern(suffix);
+        Utf8Prefix utf8 = new Utf8Prefix(content, offset, length);
+        if (pattern == null) {
+            return utf8.decode().endsWith(suffix);
+        }
+        // the end is only known once everything is decoded
+        utf8.ensure(Integer.MAX_VALUE);
+        int from = utf8.end - pattern.length;
+        if (from < utf8.start) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (utf8.bytes[from + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int indexOf(byte[] content, int offset, int length, String s) {
+        byte[] pattern = pattern(s);
+        Utf8Prefix utf8 = new Utf8Prefix(content, offset, length);
+        if (pattern == null) {
+            return utf8.decode().indexOf(s);
+        }
+        int found = find(utf8, pattern);
+        if (found < 0) {
+            return -1;
+        }
+        int chars = Utils.countChars(utf8.bytes, utf8.start, found - utf8.start);
+        return chars >= 0 ? chars : utf8.decode().indexOf(s);
+    }
+
+    static boolean contains(byte[] content, int offset, int length, String s) {
+        byte[] pattern = pattern(s);
+        Utf8Prefix utf8 = new Utf8Prefix(content, offset, length);
+        if (pattern == null) {
+            return utf8.decode().contains(s);
+        }
+        return find(utf8, pattern) >= 0;
+    }
+
+    // position in utf8.bytes of the first match, decoding more only while
+    // there is none
+    private static int find(Utf8Prefix utf8, byte[] pattern) {
+        if (pattern.length == 0) {
+            return utf8.start;
+        }
+        int from = utf8.start;
+        byte first = pattern[0];
+        while (true) {
+            byte[] bytes = utf8.bytes;
+            int last = utf8.end - pattern.length;
+            search: for (int i = from; i <= last; i++) {
+                if (bytes[i] != first) {
+                    continue;
+                }
+                for (int j = 1; j < pattern.length; j++) {
+                    if (bytes[i + j] != pattern[j]) {
+                        continue search;
+                    }
+                }
+                return i;
+            }
+            from = Math.max(from, last + 1);
+            if (!utf8.extend()) {
+                return -1;
+            }
+        }
+    }
+}
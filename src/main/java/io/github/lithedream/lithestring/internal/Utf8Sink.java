@@ -0,0 +1,40 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.util.Arrays;
+
+/**
+ * Receives the UTF-8 bytes decoded by a type while they are still in its
+ * scratch memory, so each kind of result is built with a single copy
+ *
+ * @param <T> the result
+ */
+interface Utf8Sink<T> {
+
+    /**
+     * Decodes the bytes into a String
+     */
+    Utf8Sink<String> STRING = new Utf8Sink<String>() {
+        @Override
+        public String accept(byte[] utf8, int offset, int length) {
+            return Utf8Strings.string(utf8, offset, length);
+        }
+    };
+
+    /**
+     * Copies the bytes into a new array
+     */
+    Utf8Sink<byte[]> BYTES = new Utf8Sink<byte[]>() {
+        @Override
+        public byte[] accept(byte[] utf8, int offset, int length) {
+            return Arrays.copyOfRange(utf8, offset, offset + length);
+        }
+    };
+
+    /**
+     * @param utf8   the decoded bytes; only valid during the call
+     * @param offset
+     * @param length
+     * @return the result
+     */
+    T accept(byte[] utf8, int offset, int length);
+}
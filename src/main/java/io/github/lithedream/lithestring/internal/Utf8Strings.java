@@ -0,0 +1,66 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversions between Strings and UTF-8 bytes, with fast paths for ASCII.
+ *
+ * <p>
+ * This is the Java 8 version, where the UTF-8 charset transcodes even ASCII
+ * through an encoder sized for 3 bytes per char: ASCII goes through the
+ * deprecated low-byte copies of String instead. The jar carries a Java 9
+ * version in META-INF/versions/9 (sources in src/main/java9), relying on
+ * compact strings instead.
+ * </p>
+ */
+final class Utf8Strings {
+
+    private Utf8Strings() {
+    }
+
+    /**
+     * @param s not null
+     * @return {@code s.getBytes(StandardCharsets.UTF_8)}
+     */
+    @SuppressWarnings("deprecation")
+    static byte[] utf8(String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            if (s.charAt(i) >= 0x80) {
+                return s.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        byte[] bytes = new byte[n];
+        s.getBytes(0, n, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * @param utf8
+     * @param offset
+     * @param length
+     * @return {@code new String(utf8, offset, length, StandardCharsets.UTF_8)}
+     */
+    @SuppressWarnings("deprecation")
+    static String string(byte[] utf8, int offset, int length) {
+        if (asciiPrefix(utf8, offset, length) == length) {
+            return new String(utf8, 0, offset, length);
+        }
+        return new String(utf8, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return the number of ASCII bytes from offset, at most length
+     */
+    static int asciiPrefix(byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        return i - offset;
+    }
+}
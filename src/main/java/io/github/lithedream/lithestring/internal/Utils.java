@@ -8,52 +8,255 @@ class Utils {
      * @return the number of extra bytes
      */
     static int getNExtraBytes(byte byt) {
-        int nExtraByte = 0;
-        if (!startsWith(byt, "0")) { // 1 byte
-            if (startsWith(byt, "110")) { // 2 byte
-                nExtraByte = 1;
-            } else if (startsWith(byt, "1110")) { // 3 byte
-                nExtraByte = 2;
-            } else if (startsWith(byt, "11110")) { // 4 byte
-                nExtraByte = 3;
+        if ((byt & 0x80) == 0) { // 1 byte
+            return 0;
+        }
+        if ((byt & 0xE0) == 0xC0) { // 2 byte
+            return 1;
+        }
+        if ((byt & 0xF0) == 0xE0) { // 3 byte
+            return 2;
+        }
+        if ((byt & 0xF8) == 0xF0) { // 4 byte
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns how many bytes the unsigned LEB128 varint of the value takes
+     *
+     * @param value non-negative
+     * @return the length of the varint, 1 to 5
+     */
+    static int varintLength(int value) {
+        int n = 1;
+        while ((value >>>= 7) != 0) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Writes the value as an unsigned LEB128 varint: 7 bits per byte, least
+     * significant first, high bit set on all bytes but the last
+     *
+     * @param bytes
+     * @param pos
+     * @param value non-negative
+     * @return the position after the varint
+     */
+    static int writeVarint(byte[] bytes, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[pos++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint written by writeVarint; its length is
+     * varintLength of the result
+     *
+     * @param bytes
+     * @param pos
+     * @return the value
+     * @throws IllegalArgumentException if the varint is truncated or longer than
+     *                                  5 bytes
+     */
+    static int readVarint(byte[] bytes, int pos) {
+        return readVarint(bytes, pos, bytes.length);
+    }
+
+    /**
+     * Like readVarint(byte[], int), within the bytes before end
+     *
+     * @param bytes
+     * @param pos
+     * @param end
+     * @return the value
+     * @throws IllegalArgumentException if the varint is truncated or longer than
+     *                                  5 bytes
+     */
+    static int readVarint(byte[] bytes, int pos, int end) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos >= end) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = bytes[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
             }
         }
-        return nExtraByte;
+        throw new IllegalArgumentException("Malformed varint");
     }
 
     /**
-     * Returns if byte parameter starts with the sequence of "010..." as written in
-     * binaryString
+     * Encodes the chars to UTF-8 like {@code s.toString().getBytes(UTF_8)},
+     * unpaired surrogates becoming '?', without the intermediate String
      *
-     * @param byt
-     * @param binaryString
-     * @return if the 010... of binaryString match the start of byt
-     */
-    static boolean startsWith(byte byt, String binaryString) {
-        byte pos = 7;
-        for (int i = 0; i < binaryString.length(); i++) {
-            boolean iBitIsSet = binaryString.charAt(i) == ('1');
-            boolean bitValue = getNBitValue(byt, pos);
-            if (bitValue != iBitIsSet) {
-                return false;
-            }
-            if (pos == 0) {
-                break;
+     * @param s
+     * @return the UTF-8 bytes
+     */
+    static byte[] encodeUTF8(CharSequence s) {
+        if (s instanceof String) {
+            return Utf8Strings.utf8((String) s);
+        }
+        int n = s.length();
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        byte[] bytes = new byte[length];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | c >> 6);
+                bytes[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | cp >> 18);
+                bytes[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                bytes[pos++] = '?';
+            } else {
+                bytes[pos++] = (byte) (0xE0 | c >> 12);
+                bytes[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Counts the chars of well-formed UTF-8, like new String(src, off,
+     * len, UTF_8).length() would
+     *
+     * @param src
+     * @param off
+     * @param len
+     * @return the number of chars, or -1 if the bytes are not well-formed UTF-8
+     */
+    static int countChars(byte[] src, int off, int len) {
+        int end = off + len;
+        int chars = 0;
+        int i = off;
+        while (i < end) {
+            if (src[i] >= 0) {
+                int run = Utf8Strings.asciiPrefix(src, i, end - i);
+                chars += run;
+                i += run;
+                continue;
+            }
+            int cp = codePoint(src, i, end);
+            if (cp < 0) {
+                return -1;
+            }
+            if (cp >= 0x10000) {
+                chars += 2;
+                i += 4;
             } else {
-                pos--;
+                chars++;
+                i += cp >= 0x800 ? 3 : 2;
             }
         }
-        return true;
+        return chars;
     }
 
     /**
-     * Returns the value of the n-th bit of the byte
+     * Decodes well-formed UTF-8 into chars, like new String(src, off, len, UTF_8)
+     * would
      *
-     * @param value
-     * @param n
-     * @return the value of the n-th bit of the byte
+     * @param src
+     * @param off
+     * @param len
+     * @param dst
+     * @param dstOff
+     * @return the number of chars, or -1 if the bytes are not well-formed UTF-8
+     *         or the chars do not fit in dst; dst may be partly written then
      */
-    static boolean getNBitValue(byte value, byte n) {
-        return (value & (1 << n)) != 0;
+    static int decodeUTF8(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int end = off + len;
+        int d = dstOff;
+        int i = off;
+        while (i < end) {
+            if (d >= dst.length) {
+                return -1;
+            }
+            int b = src[i];
+            if (b >= 0) {
+                int run = Math.min(Utf8Strings.asciiPrefix(src, i, end - i), dst.length - d);
+                for (int k = 0; k < run; k++) {
+                    dst[d + k] = (char) src[i + k];
+                }
+                d += run;
+                i += run;
+                continue;
+            }
+            int cp = codePoint(src, i, end);
+            if (cp < 0) {
+                return -1;
+            }
+            if (cp >= 0x10000) {
+                if (d + 1 >= dst.length) {
+                    return -1;
+                }
+                dst[d++] = Character.highSurrogate(cp);
+                dst[d++] = Character.lowSurrogate(cp);
+                i += 4;
+            } else {
+                dst[d++] = (char) cp;
+                i += cp >= 0x800 ? 3 : 2;
+            }
+        }
+        return d - dstOff;
+    }
+
+    // the code point of the multi-byte sequence at src[i], or -1 if it is not
+    // well-formed: overlong forms, surrogates and values above U+10FFFF are not
+    static int codePoint(byte[] src, int i, int end) {
+        int b = src[i] & 0xFF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            if (i + 1 >= end || (src[i + 1] & 0xC0) != 0x80) {
+                return -1;
+            }
+            return (b & 0x1F) << 6 | (src[i + 1] & 0x3F);
+        }
+        if (b >= 0xE0 && b <= 0xEF) {
+            if (i + 2 >= end || (src[i + 1] & 0xC0) != 0x80 || (src[i + 2] & 0xC0) != 0x80) {
+                return -1;
+            }
+            int cp = (b & 0x0F) << 12 | (src[i + 1] & 0x3F) << 6 | (src[i + 2] & 0x3F);
+            return cp < 0x800 || Character.isSurrogate((char) cp) ? -1 : cp;
+        }
+        if (b >= 0xF0 && b <= 0xF4) {
+            if (i + 3 >= end || (src[i + 1] & 0xC0) != 0x80 || (src[i + 2] & 0xC0) != 0x80
+                    || (src[i + 3] & 0xC0) != 0x80) {
+                return -1;
+            }
+            int cp = (b & 0x07) << 18 | (src[i + 1] & 0x3F) << 12 | (src[i + 2] & 0x3F) << 6 | (src[i + 3] & 0x3F);
+            return cp < 0x10000 || cp > Character.MAX_CODE_POINT ? -1 : cp;
+        }
+        return -1;
     }
 }
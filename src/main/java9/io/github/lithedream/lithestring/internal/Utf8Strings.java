@@ -0,0 +1,63 @@
+package io.github.lithedream.lithestring.internal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversions between Strings and UTF-8 bytes, with fast paths for ASCII.
+ *
+ * <p>
+ * This is the Java 9 version, in META-INF/versions/9 of the jar. With compact
+ * strings an ASCII String holds its UTF-8 bytes already: the UTF-8 charset
+ * checks them with an intrinsic and copies them once, both ways, which beats
+ * any copy made outside String. ASCII runs in decoded bytes are found 8 bytes
+ * at a time.
+ * </p>
+ */
+final class Utf8Strings {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private Utf8Strings() {
+    }
+
+    /**
+     * @param s not null
+     * @return {@code s.getBytes(StandardCharsets.UTF_8)}
+     */
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param utf8
+     * @param offset
+     * @param length
+     * @return {@code new String(utf8, offset, length, StandardCharsets.UTF_8)}
+     */
+    static String string(byte[] utf8, int offset, int length) {
+        return new String(utf8, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return the number of ASCII bytes from offset, at most length
+     */
+    static int asciiPrefix(byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        while (i <= end - 8 && ((long) LONGS.get(bytes, i) & HIGH_BITS) == 0) {
+            i += 8;
+        }
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        return i - offset;
+    }
+}
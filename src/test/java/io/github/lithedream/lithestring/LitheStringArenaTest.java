@@ -0,0 +1,82 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LitheStringArenaTest {
+
+    private static String randomText(Random rnd, int length) {
+        String pool = "abcdefghij klmnop QRSTUV 0123 \u00e8\u00e0 \u043f\u0440\u0438 \u7684\u4e00 \ud83d\ude00";
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            int i = rnd.nextInt(pool.length());
+            if (Character.isSurrogatePair(pool.charAt(Math.max(0, i - 1)), pool.charAt(i))) {
+                i--;
+            }
+            sb.append(pool, i, Character.isHighSurrogate(pool.charAt(i)) ? i + 2 : i + 1);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void storesAndCompacts() {
+        for (LitheStringArena arena : new LitheStringArena[] { LitheStringArena.heap(4096),
+                LitheStringArena.direct(4096) }) {
+            Random rnd = new Random(31);
+            List<String> strings = new ArrayList<>();
+            long[] handles = new long[3000];
+            for (int n = 0; n < handles.length; n++) {
+                String s = n % 100 == 0 ? null : randomText(rnd, rnd.nextInt(n % 500 == 1 ? 10000 : 40));
+                strings.add(s);
+                handles[n] = arena.add(s);
+            }
+            assertEquals(handles.length - handles.length / 100, arena.size()); // nulls are not stored
+            assertTrue(arena.usedBytes() <= arena.reservedBytes());
+            StringBuilder sb = new StringBuilder();
+            for (int n = 0; n < handles.length; n++) {
+                String s = strings.get(n);
+                assertEquals(s, arena.unzip(handles[n]));
+                assertTrue(arena.equals(handles[n], s));
+                assertFalse(arena.equals(handles[n], s + "x"));
+                if (s != null) {
+                    assertArrayEquals(LitheString.zip(s), arena.get(handles[n]));
+                    assertEquals(LitheString.zip(s).length, arena.compressedLength(handles[n]));
+                    sb.setLength(0);
+                    assertEquals(s.length(), arena.unzipTo(handles[n], sb));
+                    assertEquals(s, sb.toString());
+                }
+            }
+            assertNull(arena.get(LitheStringArena.NULL));
+
+            // keep every third entry, one of them twice
+            long[] live = new long[handles.length / 3 + 1];
+            for (int i = 0; i < live.length - 1; i++) {
+                live[i] = handles[i * 3];
+            }
+            live[live.length - 1] = handles[3];
+            long used = arena.usedBytes();
+            long[] moved = arena.compact(live);
+            assertEquals(live.length - 1 - handles.length / 300, arena.size());
+            assertTrue(arena.usedBytes() < used / 2);
+            for (int i = 0; i < live.length - 1; i++) {
+                assertEquals(strings.get(i * 3), arena.unzip(moved[i]));
+            }
+            assertEquals(moved[1], moved[live.length - 1]);
+
+            arena.clear();
+            assertEquals(0, arena.reservedBytes());
+            assertThrows(IllegalArgumentException.class, () -> arena.unzip(moved[1]));
+        }
+        assertThrows(IllegalArgumentException.class, () -> LitheStringArena.heap(8));
+    }
+}
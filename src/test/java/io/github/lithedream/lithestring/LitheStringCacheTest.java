@@ -0,0 +1,101 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class LitheStringCacheTest {
+
+    private static String value(int i) {
+        return "value number " + i + " \u00e8\u00e0 \u7684\u4e00";
+    }
+
+    @Test
+    void staysWithinBudget() {
+        long budget = 32 * 1024;
+        LitheStringCache cache = LitheStringCache.bounded(budget);
+        for (int i = 0; i < 10_000; i++) {
+            LitheString key = LitheString.of(value(i));
+            if (cache.get(key) == null) {
+                cache.put(key, value(i));
+            }
+            assertTrue(cache.stats().weight() <= budget);
+        }
+        LitheStringCache.Stats stats = cache.stats();
+        assertEquals(10_000, stats.missCount());
+        assertEquals(0, stats.hitCount());
+        assertTrue(stats.size() > 0);
+        assertTrue(stats.evictionCount() > 0);
+
+        cache.clear();
+        assertEquals(0, cache.stats().size());
+        assertEquals(0, cache.stats().weight());
+        assertThrows(IllegalArgumentException.class, () -> LitheStringCache.bounded(0));
+    }
+
+    @Test
+    void keepsFrequentValuesThroughAScan() {
+        LitheStringCache cache = LitheStringCache.bounded(64 * 1024);
+        List<LitheString> hot = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            hot.add(LitheString.of(value(i)));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < hot.size(); i++) {
+                if (cache.get(hot.get(i)) == null) {
+                    cache.put(hot.get(i), value(i));
+                }
+            }
+        }
+        // values read once do not push out those read often
+        for (int i = 1000; i < 20_000; i++) {
+            LitheString key = LitheString.of(value(i));
+            if (cache.get(key) == null) {
+                cache.put(key, value(i));
+            }
+        }
+        int found = 0;
+        for (int i = 0; i < hot.size(); i++) {
+            String cached = cache.get(hot.get(i));
+            if (cached != null) {
+                assertEquals(value(i), cached);
+                found++;
+            }
+        }
+        assertTrue(found >= 45, "hot values left: " + found);
+    }
+
+    @Test
+    void sharedByCachedInstances() {
+        LitheStringCache cache = LitheStringCache.bounded(1 << 20);
+        LitheString.setDecodeCache(cache);
+        try {
+            assertSame(cache, LitheString.getDecodeCache());
+            LitheString first = LitheString.of(value(1), false, true);
+            LitheString second = LitheString.of(value(1), false, true);
+            String decoded = first.getString();
+            assertEquals(value(1), decoded);
+            assertSame(decoded, second.getString());
+            assertEquals(1, cache.stats().hitCount());
+
+            // instances without cacheEnabled do not use it
+            LitheString.of(value(2)).getString();
+            assertNull(cache.get(LitheString.of(value(2))));
+
+            IntStream.range(0, 100_000).parallel().forEach(i -> {
+                LitheString ls = LitheString.of(value(i % 500), false, true);
+                assertEquals(value(i % 500), ls.getString());
+            });
+        } finally {
+            LitheString.setDecodeCache(null);
+        }
+    }
+}
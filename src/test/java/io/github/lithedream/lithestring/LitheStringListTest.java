@@ -0,0 +1,140 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class LitheStringListTest {
+
+    private static List<String> strings(int count) {
+        Random rnd = new Random(count);
+        List<String> strings = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            if (n % 37 == 0) {
+                strings.add(null);
+                continue;
+            }
+            strings.add(TestTexts.text(rnd, rnd.nextInt(n % 211 == 3 ? 1000 : 10)));
+        }
+        return strings;
+    }
+
+    @Test
+    void storesStrings() {
+        List<String> strings = strings(2000);
+        LitheStringList list = new LitheStringList(0, 0);
+        for (String s : strings) {
+            list.add(s);
+        }
+        assertEquals(strings, list);
+        assertEquals(strings, new ArrayList<>(list));
+        StringBuilder sb = new StringBuilder();
+        for (int n = 0; n < strings.size(); n++) {
+            String s = strings.get(n);
+            assertTrue(list.equals(n, s));
+            assertFalse(list.equals(n, s + "!"));
+            if (s == null) {
+                assertNull(list.getCompressed(n));
+                continue;
+            }
+            assertArrayEquals(LitheString.zip(s), list.getCompressed(n));
+            sb.setLength(0);
+            assertEquals(s.length(), list.unzipTo(n, sb));
+            assertEquals(s, sb.toString());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(strings.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        assertThrows(UnsupportedOperationException.class, () -> list.set(0, "x"));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+
+        list.trimToSize();
+        list.add("after trim");
+        assertEquals("after trim", list.get(strings.size()));
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.compressedBytes());
+    }
+
+    @Test
+    void collectsInParallel() {
+        List<String> strings = strings(5000);
+        LitheStringList list = IntStream.range(0, strings.size()).parallel().mapToObj(strings::get)
+                .collect(LitheStringList.collector());
+        assertEquals(strings, list);
+    }
+
+    @Test
+    void sortsByOrdinal() {
+        List<String> strings = strings(1000);
+        LitheStringList list = strings.stream().collect(LitheStringList.collector());
+
+        int[] ordinals = list.sortedOrdinals(null);
+        List<String> expected = new ArrayList<>(strings);
+        expected.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (int i = 0; i < ordinals.length; i++) {
+            assertEquals(expected.get(i), strings.get(ordinals[i]));
+        }
+        assertEquals(Arrays.asList(strings.get(5), strings.get(5), null),
+                list.permute(new int[] { 5, 5, 0 }));
+
+        list.sort(Comparator.nullsLast(Comparator.reverseOrder()));
+        expected.sort(Comparator.nullsLast(Comparator.reverseOrder()));
+        assertEquals(expected, list);
+    }
+
+    @Test
+    void serializesAsOneBlock() throws IOException, ClassNotFoundException {
+        List<String> strings = strings(1500);
+        LitheStringList list = strings.stream().collect(Collectors.toCollection(LitheStringList::new));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        list.writeTo(out);
+        assertEquals(strings, LitheStringList.readFrom(new ByteArrayInputStream(out.toByteArray())));
+        assertThrows(IllegalArgumentException.class,
+                () -> LitheStringList.readFrom(new ByteArrayInputStream(new byte[] { 'L', 'S', 'M', 1 })));
+
+        // the arrays grow past their first 64 KB as the data arrives
+        List<String> many = strings(40000);
+        out.reset();
+        many.stream().collect(Collectors.toCollection(LitheStringList::new)).writeTo(out);
+        assertEquals(many, LitheStringList.readFrom(new ByteArrayInputStream(out.toByteArray())));
+
+        // sizes a short stream cannot hold are not allocated up front
+        byte[][] lying = { { 'L', 'S', 'L', 1, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0, 0x7F, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xF0, 0 }, { 'L', 'S', 'L', 1, 0, 0, 0, 0, 0x7F, (byte) 0xFF, (byte) 0xFF,
+                        (byte) 0xF0, 0 } };
+        for (byte[] bytes : lying) {
+            assertThrows(EOFException.class, () -> LitheStringList.readFrom(new ByteArrayInputStream(bytes)));
+        }
+
+        out.reset();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(list);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            LitheStringList read = (LitheStringList) ois.readObject();
+            assertEquals(strings, read);
+            read.add("more");
+            assertEquals("more", read.get(strings.size()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LitheStringModelTest {
+
+    private static final String[] LEVELS = { "INFO", "WARN", "DEBUG", "ERROR" };
+    private static final String[] WORDS = { "request", "completed", "user", "session", "timeout", "retry", "cache",
+            "miss", "order", "created" };
+
+    private static List<String> records(Random rnd, int count) {
+        List<String> records = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            StringBuilder message = new StringBuilder();
+            for (int w = 1 + rnd.nextInt(4); w > 0; w--) {
+                message.append(WORDS[rnd.nextInt(WORDS.length)]).append(' ');
+            }
+            records.add("{\"timestamp\":\"2024-03-" + (10 + rnd.nextInt(20)) + "T" + (10 + rnd.nextInt(14)) + ":"
+                    + (10 + rnd.nextInt(50)) + ":00Z\",\"level\":\"" + LEVELS[rnd.nextInt(LEVELS.length)]
+                    + "\",\"service\":\"billing-api\",\"thread\":\"worker-" + rnd.nextInt(32) + "\",\"message\":\""
+                    + message.toString().trim() + "\"}");
+        }
+        return records;
+    }
+
+    @Test
+    void trainedModelCompressesBetter() throws IOException {
+        Random rnd = new Random(5);
+        LitheStringModel model = LitheStringTrainer.train(records(rnd, 2000), 210);
+        assertEquals(2000, model.getSampleCount());
+        assertTrue(model.getDictionary().length > 0);
+        assertTrue(model.getByteFrequencies()['"'] > 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.writeTo(out);
+        LitheStringModel loaded = LitheStringModel.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(model.getId(), loaded.getId());
+        assertArrayEquals(model.getDictionary(), loaded.getDictionary());
+        assertArrayEquals(model.getByteFrequencies(), loaded.getByteFrequencies());
+        assertEquals(model.getTotalUtf8Bytes(), loaded.getTotalUtf8Bytes());
+        assertEquals(model.getTotalChars(), loaded.getTotalChars());
+
+        loaded.register();
+        model.register();
+
+        long withModel = 0;
+        long without = 0;
+        for (String s : records(rnd, 500)) {
+            byte[] zipped = loaded.zip(s);
+            assertEquals(s, LitheString.unzip(zipped));
+            withModel += zipped.length;
+            without += LitheString.zip(s).length;
+        }
+        assertTrue(withModel * 2 < without, withModel + " vs " + without);
+    }
+
+    @Test
+    void trainsFromTheCommandLine(@TempDir Path dir) throws IOException {
+        Path corpus = dir.resolve("corpus.txt");
+        Path modelFile = dir.resolve("model.bin");
+        Files.write(corpus, records(new Random(6), 300), StandardCharsets.UTF_8);
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        assertEquals(0, LitheStringTrainer.run(new String[] { corpus.toString(), modelFile.toString(), "211", "4096" },
+                discard, discard));
+        assertEquals(2, LitheStringTrainer.run(new String[] { corpus.toString() }, discard, discard));
+        try (InputStream in = Files.newInputStream(modelFile)) {
+            LitheStringModel model = LitheStringModel.readFrom(in);
+            assertEquals(211, model.getId());
+            assertEquals(300, model.getSampleCount());
+            assertTrue(model.getDictionary().length <= 4096);
+        }
+    }
+
+    @Test
+    void rejectsInvalidModels() {
+        assertThrows(IllegalArgumentException.class,
+                () -> LitheStringModel.readFrom(new ByteArrayInputStream("NOPE".getBytes(StandardCharsets.US_ASCII))));
+        assertThrows(IllegalArgumentException.class,
+                () -> LitheStringModel.readFrom(new ByteArrayInputStream(new byte[] { 'L', 'S', 'M', 99 })));
+        List<String> samples = new ArrayList<>();
+        samples.add("x");
+        assertThrows(IllegalArgumentException.class, () -> LitheStringTrainer.train(samples, 256));
+        assertThrows(IllegalArgumentException.class, () -> LitheStringTrainer.train(samples, 1, 0));
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class LitheStringPoolTest {
+
+    private static final String[] VALUES = { "OK", "NOT_FOUND", "Italia", "Espa\u00f1a",
+            "\u0420\u043e\u0441\u0441\u0438\u044f", "\u65e5\u672c", "\ud83d\ude00 emoji", "",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)" };
+
+    @Test
+    void sharesInstances() {
+        LitheStringPool pool = LitheStringPool.bounded(100);
+        List<LitheString> first = new ArrayList<>();
+        for (String s : VALUES) {
+            LitheString pooled = pool.intern(s);
+            assertEquals(LitheString.of(s), pooled);
+            assertEquals(s, pooled.getString());
+            first.add(pooled);
+        }
+        for (int i = 0; i < VALUES.length; i++) {
+            assertSame(first.get(i), pool.intern(new String(VALUES[i])));
+            assertSame(first.get(i), pool.intern(LitheString.of(VALUES[i])));
+        }
+        assertEquals(VALUES.length, pool.size());
+        assertNull(pool.intern((String) null));
+
+        // pooled bytes cannot be changed through the shared instance
+        first.get(0).getBytes()[0] ^= 1;
+        assertEquals(VALUES[0], pool.intern(VALUES[0]).getString());
+
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertNotSame(first.get(0), pool.intern(VALUES[0]));
+    }
+
+    @Test
+    void keepsOtherEncodingsApart() {
+        LitheStringPool pool = LitheStringPool.weak();
+        String s = "an english sentence that the built-in table compresses";
+        LitheString other = LitheString.fromBytes(LitheString.zip(s));
+        // plain UTF-8 is a valid encoding too
+        byte[] raw = s.getBytes(StandardCharsets.UTF_8);
+        LitheString rawValue = pool.intern(LitheString.fromBytes(raw));
+        assertArrayEquals(raw, rawValue.getBytes());
+        assertTrue(other.getBytes().length < raw.length);
+
+        LitheString pooled = pool.intern(s);
+        assertEquals(other, pooled);
+        assertNotSame(rawValue, pooled);
+        assertSame(pooled, pool.intern(other));
+        assertSame(rawValue, pool.intern(LitheString.fromBytes(raw)));
+    }
+
+    @Test
+    void internsConcurrently() {
+        LitheStringPool pool = LitheStringPool.weak();
+        ConcurrentMap<String, LitheString> seen = new ConcurrentHashMap<>();
+        IntStream.range(0, 200_000).parallel().forEach(i -> {
+            String s = "value " + (i % 1000);
+            LitheString pooled = pool.intern(s);
+            LitheString previous = seen.putIfAbsent(s, pooled);
+            assertTrue(previous == null || previous == pooled);
+        });
+        assertEquals(1000, seen.size());
+        assertEquals(1000, pool.size());
+    }
+
+    @Test
+    void rejectsNegativeBound() {
+        assertThrows(IllegalArgumentException.class, () -> LitheStringPool.bounded(-1));
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LitheStringStoreTest {
+
+    @Test
+    void writesAppendsAndMaps(@TempDir Path dir) throws IOException {
+        Path data = dir.resolve("strings.dat");
+        Path index = dir.resolve("strings.idx");
+        Random rnd = new Random(41);
+        List<String> strings = new ArrayList<>();
+        try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+            for (int n = 0; n < 2000; n++) {
+                String s = n % 97 == 0 ? null
+                        : n % 89 == 0 ? "" : TestTexts.text(rnd, rnd.nextInt(n % 300 == 5 ? 2000 : 12));
+                assertEquals(n, writer.add(s));
+                strings.add(s);
+            }
+        }
+        // appends after reopening, past a torn tail
+        Files.write(data, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+        Files.write(index, new byte[] { 4, 5 }, StandardOpenOption.APPEND);
+        try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+            assertEquals(strings.size(), writer.size());
+            for (int n = 0; n < 500; n++) {
+                String s = TestTexts.text(rnd, rnd.nextInt(30));
+                writer.add(s);
+                strings.add(s);
+            }
+        }
+
+        // windows of 64 bytes: many entries cross two of them
+        for (int windowSize : new int[] { 64, MappedFile.DEFAULT_WINDOW_SIZE }) {
+            try (LitheStringStore store = LitheStringStore.open(data, index, windowSize)) {
+                assertEquals(strings.size(), store.size());
+                StringBuilder sb = new StringBuilder();
+                for (int n = 0; n < strings.size(); n++) {
+                    String s = strings.get(n);
+                    assertEquals(s, store.get(n));
+                    assertTrue(store.equals(n, s));
+                    assertFalse(store.equals(n, s + "!"));
+                    if (s != null) {
+                        assertArrayEquals(LitheString.zip(s), store.getCompressed(n));
+                        sb.setLength(0);
+                        assertEquals(s.length(), store.unzipTo(n, sb));
+                        assertEquals(s, sb.toString());
+                    }
+                }
+                assertThrows(IndexOutOfBoundsException.class, () -> store.get(strings.size()));
+                assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+            }
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path data = dir.resolve("strings.dat");
+        Path index = dir.resolve("strings.idx");
+        Files.write(data, "not a store".getBytes(StandardCharsets.US_ASCII));
+        Files.write(index, "not a store".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> LitheStringStore.open(data, index));
+        assertThrows(IllegalArgumentException.class, () -> LitheStringStoreWriter.open(data, index));
+    }
+
+    @Test
+    void rejectsSpansLongerThanAnArray(@TempDir Path dir) throws IOException {
+        Path data = dir.resolve("strings.dat");
+        Path index = dir.resolve("strings.idx");
+        try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+            writer.add("hello");
+            writer.add("world");
+        }
+        // the first entry ends 4 GB + 5 bytes after its start: 5 once cast to
+        // int; the last one, checked on open, is left alone
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            ByteBuffer entry = ByteBuffer.allocate(8);
+            entry.putLong(0, LitheStringStore.HEADER_LENGTH + (1L << 32) + 5);
+            channel.write(entry, LitheStringStore.HEADER_LENGTH);
+        }
+        try (LitheStringStore store = LitheStringStore.open(data, index)) {
+            assertThrows(IllegalArgumentException.class, () -> store.getCompressed(0));
+        }
+    }
+
+    @Test
+    void keepsDataBehindAnEmptyIndex(@TempDir Path dir) throws IOException {
+        Path data = dir.resolve("strings.dat");
+        Path index = dir.resolve("strings.idx");
+        try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+            writer.add("hello");
+        }
+        byte[] bytes = Files.readAllBytes(data);
+        Files.write(index, new byte[0]);
+        assertThrows(IllegalArgumentException.class, () -> LitheStringStoreWriter.open(data, index));
+        assertArrayEquals(bytes, Files.readAllBytes(data));
+
+        // a creation cut after the data header is completed
+        Files.write(data, Arrays.copyOf(bytes, LitheStringStore.HEADER_LENGTH));
+        Files.write(index, new byte[0]);
+        try (LitheStringStoreWriter writer = LitheStringStoreWriter.open(data, index)) {
+            assertEquals(0, writer.add("hello"));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(data));
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.lithedream.lithestring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LitheStringStreamTest {
+
+    private static final String[] WORDS = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+            "\u00e8\u00e0", "\u043f\u0440\u0438\u0432\u0435\u0442", "\u7684\u4e00\u662f", "\ud83d\ude00", "\n" };
+
+    private static String text(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[777];
+        int n;
+        while ((n = reader.read(buffer)) >= 0) {
+            sb.append(buffer, 0, n);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[333];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void writerAndReaderRoundTrip() throws IOException {
+        Random rnd = new Random(21);
+        for (int chunkSize : new int[] { 4, 100, 4096, LitheStringOutputStream.DEFAULT_CHUNK_SIZE }) {
+            String text = text(rnd, 200000);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (LitheStringWriter writer = new LitheStringWriter(compressed, chunkSize)) {
+                for (int i = 0; i < text.length();) {
+                    int n = Math.min(text.length() - i, rnd.nextInt(3000));
+                    if (rnd.nextBoolean()) {
+                        writer.write(text, i, n);
+                    } else {
+                        writer.write(text.toCharArray(), i, n);
+                    }
+                    if (n % 50 == 0) {
+                        writer.flush();
+                    }
+                    i += n;
+                }
+            }
+            try (LitheStringReader reader = new LitheStringReader(new ByteArrayInputStream(compressed.toByteArray()))) {
+                assertEquals(text, readAll(reader));
+            }
+            if (chunkSize > 100) {
+                assertTrue(compressed.size() < text.getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+    }
+
+    @Test
+    void outputAndInputStreamRoundTrip() throws IOException {
+        byte[] utf8 = text(new Random(22), 300000).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        LitheStringOutputStream out = new LitheStringOutputStream(compressed, 1000);
+        for (int i = 0; i < utf8.length; i++) {
+            if (i % 7 == 0) {
+                out.write(utf8[i]);
+            } else {
+                int n = Math.min(utf8.length - i, 5000);
+                out.write(utf8, i, n);
+                i += n - 1;
+            }
+        }
+        out.finish();
+        compressed.write("tail".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> out.write(1));
+
+        ByteArrayInputStream source = new ByteArrayInputStream(compressed.toByteArray());
+        assertArrayEquals(utf8, readAll(new LitheStringInputStream(source)));
+        assertEquals(4, source.available()); // the data after the stream is not read
+    }
+
+    @Test
+    void rejectsTruncatedStreams() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (LitheStringWriter writer = new LitheStringWriter(compressed)) {
+            writer.write(text(new Random(23), 1000));
+        }
+        byte[] bytes = compressed.toByteArray();
+        for (int length : new int[] { 0, 1, bytes.length / 2, bytes.length - 1 }) {
+            InputStream in = new LitheStringInputStream(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+            assertThrows(EOFException.class, () -> readAll(in));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new LitheStringOutputStream(compressed, 3));
+    }
+}
@@ -2,9 +2,26 @@ package io.github.lithedream.lithestring;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import org.junit.jupiter.api.Test;
 
@@ -51,7 +68,7 @@ class LitheStringTest {
                 "The quick brown fox jumps over the lazy dog. "
         };
 
-        for (int type = 1; type <= 3; type++) {
+        for (int type : new int[] { 1, 2, 3, 4, 6 }) {
             for (String s : samples) {
                 byte[] zipped = LitheStringAlgorithm.zip(s, type);
                 String unzipped = LitheStringAlgorithm.unzip(zipped);
@@ -80,6 +97,590 @@ class LitheStringTest {
         }
     }
 
+    @Test
+    void type2RoundTripWithLongCodes() {
+        // Fibonacci frequencies give the deepest possible Huffman tree
+        StringBuilder sb = new StringBuilder();
+        int a = 1;
+        int b = 2;
+        for (int i = 0; i < 24; i++) {
+            for (int k = 0; k < a; k++) {
+                sb.append((char) ('A' + i));
+            }
+            int c = a + b;
+            a = b;
+            b = c;
+        }
+        sb.append("\u00e8\u4e2d\uD83D\uDE80");
+        String input = sb.toString();
+        assertEquals(input, LitheStringAlgorithm.unzip(LitheStringAlgorithm.zip(input, 2)));
+    }
+
+    /**
+     * Checksums of type1/type2 outputs recorded with version 2.0.1: the encoders
+     * must keep producing exactly the same bytes.
+     */
+    @Test
+    void encodedBytesMatchPreviousVersion() {
+        Random rnd = new Random(42);
+        CRC32 crc = new CRC32();
+        for (int n = 0; n < 600; n++) {
+            String s = randomString(rnd, n % 7 == 0 ? rnd.nextInt(700) : rnd.nextInt(80));
+            for (int type = 1; type <= 2; type++) {
+                byte[] zipped = LitheStringAlgorithm.zip(s, type);
+                crc.update(zipped);
+                assertEquals(s, LitheStringAlgorithm.unzip(zipped), "type=" + type + ", input=" + s);
+            }
+        }
+        assertEquals(0x634d5ac6L, crc.getValue());
+
+        CRC32 crcBytes = new CRC32();
+        for (int n = 0; n < 300; n++) {
+            byte[] b = new byte[1 + rnd.nextInt(60)];
+            rnd.nextBytes(b);
+            for (int type = 1; type <= 2; type++) {
+                crcBytes.update(LitheStringAlgorithm.zipUTF8(b, type));
+            }
+        }
+        assertEquals(0x13c71988L, crcBytes.getValue());
+    }
+
+    /**
+     * Type2 bytes written by version 2.0.1, whose Huffman ties follow HashMap
+     * iteration order: written again byte for byte, and decoded
+     */
+    @Test
+    void type2BytesMatchPreviousVersion() {
+        String[][] cases = { { "hello world, hello type2", "a012365ca689b2d1bea41a612eef372364cb2a612ee9bcee0f32" },
+                { "\u043f\u0440\u0438\u0432\u0435\u0442 \u043c\u0438\u0440 \u043f\u0440\u0438\u0432\u0435\u0442",
+                        "a24d0b85104f42ca9a3055d0b5be8c0395ba17fef1d8b342f0eb78ec" },
+                { "abcabcabd\u00e8\u4e2d\uD83D\uDE80xyz", "a2a661731dd8bbebeb9918750e4b8ad784fcd401e0f27a" } };
+        for (String[] c : cases) {
+            byte[] bytes = new byte[c[1].length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(c[1].substring(2 * i, 2 * i + 2), 16);
+            }
+            assertArrayEquals(bytes, LitheStringAlgorithm.zip(c[0], 2));
+            assertEquals(c[0], LitheString.unzip(bytes));
+        }
+    }
+
+    /**
+     * zipUTF8 must pick the same bytes as encoding with every candidate and
+     * keeping the shortest (first wins on ties)
+     */
+    @Test
+    void zipPicksShortestCandidate() {
+        Random rnd = new Random(7);
+        for (int n = 0; n < 1500; n++) {
+            byte[] b;
+            if (n % 5 == 0) {
+                b = new byte[1 + rnd.nextInt(600)];
+                rnd.nextBytes(b);
+            } else {
+                b = randomString(rnd, 1 + rnd.nextInt(n % 3 == 0 ? 600 : 80)).getBytes(StandardCharsets.UTF_8);
+            }
+            byte[] expected = b;
+            int[] types = b.length <= 64 ? new int[] { 1, 2, 6 }
+                    : b.length <= 512 ? new int[] { 1, 2, 6, 4 } : new int[] { 4 };
+            for (int type : types) {
+                byte[] candidate = LitheStringAlgorithm.zipUTF8(b, type);
+                if (candidate.length < expected.length) {
+                    expected = candidate;
+                }
+            }
+            assertArrayEquals(expected, LitheStringAlgorithm.zipUTF8(b));
+        }
+    }
+
+    @Test
+    void presetDictionaryRoundTrip() {
+        String dictionary = "{\"timestamp\":\"2024-01-01T00:00:00Z\",\"level\":\"INFO\",\"logger\":"
+                + "\"io.github.lithedream.service\",\"thread\":\"main\",\"message\":\"request completed\"}";
+        LitheString.registerDictionary(200, dictionary.getBytes(StandardCharsets.UTF_8));
+        LitheString.registerDictionary(200, dictionary.getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.registerDictionary(200, new byte[] { 1 }));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.registerDictionary(256, new byte[] { 1 }));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.zipWithDictionary("x", 201));
+
+        Random rnd = new Random(11);
+        for (int n = 0; n < 200; n++) {
+            String s = "{\"timestamp\":\"2024-03-" + (10 + rnd.nextInt(20)) + "T12:" + (10 + rnd.nextInt(50))
+                    + ":00Z\",\"level\":\"" + (rnd.nextBoolean() ? "INFO" : "WARN")
+                    + "\",\"logger\":\"io.github.lithedream.service\",\"thread\":\"worker-" + rnd.nextInt(16)
+                    + "\",\"message\":\"request " + randomString(rnd, rnd.nextInt(30)) + "\"}";
+            byte[] zipped = LitheString.zipWithDictionary(s, 200);
+            assertEquals(s, LitheString.unzip(zipped));
+            assertTrue(zipped.length <= LitheString.zip(s).length);
+        }
+        String record = "{\"timestamp\":\"2024-03-11T12:30:00Z\",\"level\":\"INFO\","
+                + "\"logger\":\"io.github.lithedream.service\",\"thread\":\"main\",\"message\":\"request completed\"}";
+        assertTrue(LitheString.zipWithDictionary(record, 200).length * 3 < LitheString.zip(record).length);
+        assertNull(LitheString.zipWithDictionary(null, 200));
+    }
+
+    @Test
+    void staticHuffmanTableRoundTrip() {
+        Random rnd = new Random(13);
+        String[] samples = new String[300];
+        int[] frequencies = new int[256];
+        for (int n = 0; n < samples.length; n++) {
+            samples[n] = "user_" + rnd.nextInt(100000) + "@" + randomString(rnd, 1 + rnd.nextInt(20));
+            for (byte b : samples[n].getBytes(StandardCharsets.UTF_8)) {
+                frequencies[b & 0xFF]++;
+            }
+        }
+        frequencies['@'] = 0; // escaped
+        LitheString.registerHuffmanTable(200, frequencies);
+        LitheString.registerHuffmanTable(200, frequencies);
+        assertThrows(IllegalArgumentException.class, () -> LitheString.registerHuffmanTable(200, new int[256]));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.registerHuffmanTable(1, new int[255]));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.zipWithHuffmanTable("x", 201));
+
+        int withTable = 0;
+        int without = 0;
+        for (String s : samples) {
+            byte[] zipped = LitheString.zipWithHuffmanTable(s, 200);
+            assertEquals(s, LitheString.unzip(zipped));
+            assertTrue(zipped.length <= LitheString.zip(s).length);
+            assertEquals(s, LitheString.unzip(LitheStringAlgorithm.zipUTF8WithHuffmanTable(
+                    s.getBytes(StandardCharsets.UTF_8), 200)));
+            withTable += zipped.length;
+            without += LitheString.zip(s).length;
+        }
+        assertTrue(withTable < without);
+    }
+
+    @Test
+    void zipAllMatchesZip() throws InterruptedException {
+        Random rnd = new Random(17);
+        List<String> inputs = new ArrayList<>();
+        for (int n = 0; n < 4000; n++) {
+            inputs.add(n % 500 == 0 ? null : randomString(rnd, rnd.nextInt(n % 7 == 0 ? 1000 : 80)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<byte[]> zipped = LitheString.zipAll(inputs);
+            List<byte[]> zippedOnExecutor = LitheString.zipAll(inputs, executor);
+            for (int n = 0; n < inputs.size(); n++) {
+                assertArrayEquals(LitheString.zip(inputs.get(n)), zipped.get(n));
+                assertArrayEquals(zipped.get(n), zippedOnExecutor.get(n));
+            }
+            assertEquals(inputs, LitheString.unzipAll(zipped));
+            assertEquals(inputs, LitheString.unzipAll(zippedOnExecutor, executor));
+            assertEquals(inputs, LitheString.unzipAll(LitheString.zipAll(inputs.parallelStream()))
+                    .collect(Collectors.toList()));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> LitheString.unzipAll(new byte[][] { { (byte) 0xBD, (byte) 201, 1 } }));
+    }
+
+    @Test
+    void byteBufferEntryPoints() {
+        Random rnd = new Random(19);
+        ByteBuffer heap = ByteBuffer.allocate(20000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(20000);
+        for (int n = 0; n < 500; n++) {
+            String s = randomString(rnd, rnd.nextInt(n % 5 == 0 ? 3000 : 100));
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            byte[] zipped = LitheString.zip(s);
+            assertArrayEquals(utf8, LitheString.unzipUTF8(zipped));
+
+            heap.clear().position(7);
+            assertEquals(zipped.length, LitheString.zip(s, heap));
+            direct.clear();
+            ByteBuffer src = ByteBuffer.wrap(utf8);
+            assertEquals(zipped.length, LitheString.zipUTF8(src, direct));
+            assertEquals(0, src.remaining());
+            direct.flip();
+            heap.flip().position(7);
+            assertEquals(direct, heap);
+
+            // a slice of a heap buffer is read in place, a direct one through a copy
+            ByteBuffer out = ByteBuffer.allocateDirect(utf8.length + 3);
+            assertEquals(utf8.length, LitheString.unzipTo(heap.slice(), out));
+            assertEquals(utf8.length, LitheString.unzipTo(direct, ByteBuffer.allocate(utf8.length)));
+            assertEquals(0, direct.remaining());
+            out.flip();
+            assertEquals(ByteBuffer.wrap(utf8), out);
+        }
+        assertNull(LitheString.unzipUTF8(null));
+
+        ByteBuffer src = ByteBuffer.wrap(LitheString.zip("hello hello hello"));
+        ByteBuffer small = ByteBuffer.allocate(4);
+        assertThrows(BufferOverflowException.class, () -> LitheString.unzipTo(src, small));
+        assertEquals(0, src.position());
+        assertEquals(0, small.position());
+        assertThrows(BufferOverflowException.class, () -> LitheString.zip("hello hello hello", small));
+    }
+
+    @Test
+    void byteBufferLargeValuesInPlace() {
+        Random rnd = new Random(29);
+        for (int n = 0; n < 40; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = n % 4 == 0 ? 100000 : 600 + rnd.nextInt(30000);
+            while (sb.length() < length) {
+                sb.append(n % 3 == 0 ? (char) rnd.nextInt(0x10000) : randomString(rnd, 40));
+            }
+            byte[] utf8 = sb.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] zipped = LitheString.zip(sb.toString());
+
+            // a direct source and a heap destination sliced from a larger array
+            ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+            direct.put(utf8).flip();
+            ByteBuffer heap = ByteBuffer.wrap(new byte[utf8.length + 20], 5, utf8.length + 10).slice();
+            assertEquals(zipped.length, LitheString.zipUTF8(direct, heap));
+            assertEquals(0, direct.remaining());
+            heap.flip();
+            assertEquals(ByteBuffer.wrap(zipped), heap);
+
+            // a CharSequence into a direct destination, through the scratch
+            ByteBuffer out = ByteBuffer.allocateDirect(zipped.length);
+            assertEquals(zipped.length, LitheString.zip(sb, out));
+            out.flip();
+            assertEquals(ByteBuffer.wrap(zipped), out);
+
+            ByteBuffer decoded = ByteBuffer.allocateDirect(utf8.length);
+            assertEquals(utf8.length, LitheString.unzipTo(out, decoded));
+            assertEquals(0, out.remaining());
+            decoded.flip();
+            assertEquals(ByteBuffer.wrap(utf8), decoded);
+        }
+
+        // unpaired surrogates become '?' as in String.getBytes
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i % 7 == 0 ? '\uD800' : i % 11 == 0 ? '\uDC00' : (char) ('a' + i % 26));
+        }
+        ByteBuffer out = ByteBuffer.allocate(2000);
+        LitheString.zip(sb, out);
+        out.flip();
+        assertEquals(ByteBuffer.wrap(LitheString.zip(sb.toString())), out);
+
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'x');
+        byte[] zipped = LitheString.zip(new String(chars));
+        ByteBuffer direct = ByteBuffer.allocateDirect(zipped.length);
+        direct.put(zipped).flip();
+        ByteBuffer small = ByteBuffer.allocateDirect(4999);
+        assertThrows(BufferOverflowException.class, () -> LitheString.unzipTo(direct, small));
+        small.limit(3);
+        assertThrows(BufferOverflowException.class, () -> LitheString.zip(new String(chars), small));
+        assertEquals(0, direct.position());
+        assertEquals(0, small.position());
+
+        // a truncated stream leaves the destination where it was
+        direct.limit(direct.limit() - 1);
+        ByteBuffer dst = ByteBuffer.allocateDirect(5000);
+        assertThrows(IllegalArgumentException.class, () -> LitheString.unzipTo(direct, dst));
+        assertEquals(0, dst.position());
+    }
+
+    @Test
+    void unzipToCharBuffers() throws IOException {
+        Random rnd = new Random(23);
+        StringBuilder sb = new StringBuilder("prefix");
+        StringBuilder expected = new StringBuilder("prefix");
+        StringWriter writer = new StringWriter();
+        CharBuffer charBuffer = CharBuffer.allocate(1 << 20);
+        StringBuffer buffer = new StringBuffer();
+        char[] chars = new char[5000];
+        List<byte[]> contents = new ArrayList<>();
+        for (int n = 0; n < 500; n++) {
+            contents.add(LitheString.zip(randomString(rnd, rnd.nextInt(n % 5 == 0 ? 3000 : 100))));
+        }
+        // not well-formed UTF-8, returned raw
+        contents.add(new byte[] { (byte) 0xC3, '(', (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xF4, (byte) 0x90 });
+        for (byte[] content : contents) {
+            String s = LitheString.unzip(content);
+            assertEquals(s.length(), LitheString.unzipTo(content, sb));
+            assertEquals(s.length(), LitheString.unzipTo(content, writer));
+            assertEquals(s.length(), LitheString.unzipTo(content, charBuffer));
+            assertEquals(s.length(), LitheString.unzipTo(content, (Appendable) buffer));
+            expected.append(s);
+            assertEquals(s.length(), LitheString.unzipTo(content, chars, 3));
+            assertEquals(s, new String(chars, 3, s.length()));
+            if (s.length() > 3) {
+                char[] small = new char[s.length() - 1];
+                assertThrows(IndexOutOfBoundsException.class, () -> LitheString.unzipTo(content, small, 0));
+            }
+        }
+        assertEquals(expected.toString(), sb.toString());
+        assertEquals(expected.substring(6), writer.toString());
+        assertEquals(expected.substring(6), charBuffer.flip().toString());
+        assertEquals(expected.substring(6), buffer.toString());
+
+        Appendable failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertThrows(IOException.class, () -> LitheString.unzipTo(LitheString.zip("hello"), failing));
+    }
+
+    @Test
+    void charSequenceViewDecodesLazily() {
+        Random rnd = new Random(29);
+        List<byte[]> contents = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            String s = randomString(rnd, rnd.nextInt(n % 10 == 0 ? 20000 : 300));
+            contents.add(LitheString.zip(s));
+            contents.add(LitheStringAlgorithm.zip(s, 1 + n % 4));
+            contents.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+        contents.add(new byte[] { (byte) 0xC3, '(', (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xF4, (byte) 0x90 });
+        for (byte[] content : contents) {
+            String s = LitheString.unzip(content);
+            CharSequence view = LitheString.fromBytes(content).asCharSequence();
+            // the first chars alone, then every char from the end
+            for (int i = 0; i < Math.min(3, s.length()); i++) {
+                assertEquals(s.charAt(i), view.charAt(i));
+            }
+            assertEquals(s.length(), view.length());
+            for (int i = s.length() - 1; i >= 0; i--) {
+                assertEquals(s.charAt(i), view.charAt(i));
+            }
+            for (int i = 0; i < 10; i++) {
+                int start = rnd.nextInt(s.length() + 1);
+                int end = start + rnd.nextInt(s.length() - start + 1);
+                assertEquals(s.substring(start, end), view.subSequence(start, end).toString());
+            }
+            assertEquals(s, view.toString());
+            assertThrows(IndexOutOfBoundsException.class, () -> view.charAt(s.length()));
+            assertThrows(IndexOutOfBoundsException.class, () -> view.charAt(-1));
+            assertThrows(IndexOutOfBoundsException.class, () -> view.subSequence(0, s.length() + 1));
+        }
+        assertNull(LitheString.of(null).asCharSequence());
+    }
+
+    @Test
+    void searchesMatchString() {
+        Random rnd = new Random(37);
+        List<byte[]> contents = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            String s = randomString(rnd, rnd.nextInt(n % 10 == 0 ? 20000 : 300));
+            contents.add(LitheString.zip(s));
+            contents.add(LitheStringAlgorithm.zip(s, 1 + n % 4));
+        }
+        contents.add(new byte[0]);
+        contents.add(new byte[] { 'a', (byte) 0xC3, '(', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'b', (byte) 0xF4 });
+        for (byte[] content : contents) {
+            String s = LitheString.unzip(content);
+            LitheString ls = LitheString.fromBytes(content);
+            List<String> patterns = new ArrayList<>();
+            patterns.add("");
+            patterns.add("\uFFFD");
+            patterns.add("\ud83d");
+            patterns.add("not there");
+            patterns.add(s);
+            patterns.add(s + "!");
+            for (int i = 0; i < 10 && !s.isEmpty(); i++) {
+                int start = rnd.nextInt(s.length());
+                patterns.add(s.substring(start, Math.min(s.length(), start + 1 + rnd.nextInt(8))));
+                patterns.add(s.substring(0, rnd.nextInt(s.length())));
+                patterns.add(s.substring(rnd.nextInt(s.length())));
+            }
+            for (String pattern : patterns) {
+                assertEquals(s.startsWith(pattern), ls.startsWith(pattern), pattern);
+                assertEquals(s.endsWith(pattern), ls.endsWith(pattern), pattern);
+                assertEquals(s.indexOf(pattern), ls.indexOf(pattern), pattern);
+                assertEquals(s.contains(pattern), ls.contains(pattern), pattern);
+            }
+        }
+        LitheString none = LitheString.of(null);
+        assertEquals(-1, none.indexOf("a"));
+        assertTrue(!none.startsWith("") && !none.endsWith("") && !none.contains(""));
+    }
+
+    @Test
+    void lengthHeaderRoundTrip() {
+        Random rnd = new Random(41);
+        List<String> inputs = new ArrayList<>();
+        inputs.add("");
+        inputs.add("lone \ud800 surrogate");
+        for (int n = 0; n < 300; n++) {
+            inputs.add(randomString(rnd, rnd.nextInt(n % 10 == 0 ? 5000 : 200)));
+        }
+        for (String input : inputs) {
+            String s = new String(input.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            byte[] zipped = LitheString.zip(input);
+            byte[] wrapped = LitheString.zipWithLength(input);
+            assertTrue(wrapped.length <= zipped.length + 11);
+            assertEquals(s, LitheString.unzip(wrapped));
+            assertArrayEquals(LitheString.unzipUTF8(zipped), LitheString.unzipUTF8(wrapped));
+            for (byte[] content : new byte[][] { zipped, wrapped }) {
+                assertEquals(s.length(), LitheString.length(content));
+                assertEquals(s.getBytes(StandardCharsets.UTF_8).length, LitheString.utf8Length(content));
+            }
+            LitheString ls = LitheString.fromBytes(wrapped);
+            assertEquals(s.length(), ls.length());
+            assertEquals(s.length(), ls.asCharSequence().length());
+            assertEquals(s, ls.asCharSequence().toString());
+            if (!s.isEmpty()) {
+                assertEquals(s.charAt(s.length() - 1), ls.asCharSequence().charAt(s.length() - 1));
+                assertTrue(ls.startsWith(s.substring(0, 1)) && ls.endsWith(s.substring(s.length() - 1)));
+                assertThrows(IndexOutOfBoundsException.class,
+                        () -> LitheString.unzipTo(wrapped, new char[s.length() - 1], 0));
+            }
+            assertTrue(LitheStringAlgorithm.contentEquals(wrapped, 0, wrapped.length, s));
+            assertTrue(!LitheStringAlgorithm.contentEquals(wrapped, 0, wrapped.length, s + "x"));
+            StringBuilder sb = new StringBuilder();
+            assertEquals(s.length(), LitheString.unzipTo(wrapped, sb));
+            assertEquals(s, sb.toString());
+        }
+
+        byte[] corrupt = LitheString.zipWithLength("hello world");
+        corrupt[1]++;
+        assertThrows(IllegalArgumentException.class, () -> LitheString.unzip(corrupt));
+
+        // lengths no content holds are rejected before anything is sized by them
+        byte[][] lying = { { (byte) 0xBB, 1, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a' },
+                { (byte) 0xBB, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, (byte) 0xF0, (byte) 0xFF,
+                        (byte) 0xFF, (byte) 0x7F, 'a' },
+                { (byte) 0xBB, 7, 1, 'a' } };
+        for (byte[] content : lying) {
+            assertThrows(IllegalArgumentException.class, () -> LitheString.unzipTo(content, new StringBuilder()));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.unzipTo(content, new char[4], 0));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.length(content));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.utf8Length(content));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.fromBytes(content).asCharSequence());
+        }
+    }
+
+    @Test
+    void blocksDecodeOnlyWhatIsRead() {
+        Random rnd = new Random(43);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int len : new int[] { 0, 1, 1023, 5000, 40000 }) {
+                String s = randomString(rnd, len) + (len > 0 ? "\ud800" : "");
+                String decoded = new String(s.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                byte[] blocks = LitheString.zipWithBlocks(s, 1024);
+                assertEquals(decoded, LitheString.unzip(blocks));
+                assertEquals(decoded, LitheString.unzip(blocks, executor));
+                assertArrayEquals(decoded.getBytes(StandardCharsets.UTF_8), LitheString.unzipUTF8(blocks));
+                assertEquals(decoded.length(), LitheString.length(blocks));
+                assertEquals(decoded.getBytes(StandardCharsets.UTF_8).length, LitheString.utf8Length(blocks));
+                assertTrue(LitheStringAlgorithm.contentEquals(blocks, 0, blocks.length, decoded));
+                for (int n = 0; n < 50 && len > 0; n++) {
+                    int from = rnd.nextInt(decoded.length());
+                    int to = from + rnd.nextInt(Math.min(3000, decoded.length() - from) + 1);
+                    assertEquals(decoded.substring(from, to), LitheString.substring(blocks, from, to));
+                    assertEquals(decoded.charAt(from), LitheString.charAt(blocks, from));
+                }
+                LitheString ls = LitheString.fromBytes(blocks);
+                CharSequence view = ls.asCharSequence();
+                for (int i = 0; i < decoded.length(); i += 97) {
+                    assertEquals(decoded.charAt(i), view.charAt(i));
+                }
+                assertEquals(decoded, view.toString());
+                assertEquals(decoded.endsWith("x"), ls.endsWith("x"));
+                if (len > 100) {
+                    String needle = decoded.substring(len - 40, len - 20);
+                    assertEquals(decoded.indexOf(needle), ls.indexOf(needle));
+                    assertTrue(ls.startsWith(decoded.substring(0, 30)));
+                }
+                assertThrows(IndexOutOfBoundsException.class, () -> LitheString.charAt(blocks, decoded.length()));
+                assertThrows(IndexOutOfBoundsException.class,
+                        () -> LitheString.substring(blocks, 0, decoded.length() + 1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        String text = "random access " + randomString(rnd, 2000);
+        byte[] zipped = LitheString.zip(text);
+        assertEquals(text.substring(5, 1500), LitheString.substring(zipped, 5, 1500));
+        assertEquals(text.charAt(1999), LitheString.charAt(zipped, 1999));
+        assertThrows(IllegalArgumentException.class, () -> LitheString.zipWithBlocks(text, 100));
+
+        byte[] corrupt = LitheString.zipWithBlocks(text, 1024);
+        corrupt[6]++;
+        assertThrows(IllegalArgumentException.class, () -> LitheString.unzip(corrupt));
+
+        // one block of 1 compressed byte: claiming 2 GB, more chars than
+        // bytes, or 2 bytes where it holds 1
+        byte[][] lying = { { (byte) 0xBA, 1, 0, 0, 0, 1, 0x7F, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 0, 1, 'a' },
+                { (byte) 0xBA, 1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 2, 'a' },
+                { (byte) 0xBA, 1, 0, 0, 0, 1, 0, 0, 0, 2, 0, 0, 0, 2, 'a' } };
+        for (byte[] content : lying) {
+            assertThrows(IllegalArgumentException.class, () -> LitheString.unzip(content));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.unzipTo(content, new StringBuilder()));
+            assertThrows(IllegalArgumentException.class, () -> LitheString.charAt(content, 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> LitheString.fromBytes(content).asCharSequence().toString());
+        }
+    }
+
+    @Test
+    void asciiRunsAroundOtherChars() {
+        String[] others = { "\u00e9", "\u20ac", "\uD83D\uDE00", "\ud800" };
+        for (int len = 0; len < 40; len++) {
+            StringBuilder ascii = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                ascii.append((char) ('a' + i % 26));
+            }
+            List<String> inputs = new ArrayList<>();
+            inputs.add(ascii.toString());
+            for (String other : others) {
+                for (int at = 0; at <= len; at += 3) {
+                    inputs.add(new StringBuilder(ascii).insert(at, other).toString());
+                }
+            }
+            for (String input : inputs) {
+                String s = new String(input.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                for (byte[] zipped : new byte[][] { LitheString.zip(input), input.getBytes(StandardCharsets.UTF_8),
+                        LitheStringAlgorithm.zip(input, 4) }) {
+                    assertEquals(s, LitheString.unzip(zipped));
+                    assertEquals(s.length(), LitheString.length(zipped));
+                    char[] chars = new char[s.length() + 1];
+                    assertEquals(s.length(), LitheString.unzipTo(zipped, chars, 1));
+                    assertEquals(s, new String(chars, 1, s.length()));
+                }
+            }
+        }
+    }
+
+    private static final String[] POOLS = { "etaoinshrdlu etaoin ETAOIN",
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ     ", "0123456789.,;:-_/\"{}[]()!?'",
+            "\u00e0\u00e8\u00e9\u00ec\u00f2\u00f9\u00e7\u00f1\u00fc\u00df",
+            "\u043f\u0440\u0438\u0432\u0435\u0442\u043c\u0438\u0440\u0434\u0430\u043d\u0435\u0442"
+                    + "\u044c\u044f\u044e\u0436\u0437\u043a\u043b\u043e\u0441\u0443\u0444\u0445\u0446"
+                    + "\u0447\u0448",
+            "\u7684\u4e00\u662f\u4e0d\u4e86\u4eba\u6211\u5728\u6709\u4ed6\u8fd9\u4e2d\u5927\u6765",
+            "\uD83D\uDE00\uD83D\uDE42\uD83D\uDE80\uD83C\uDF89" };
+
+    private static String randomString(Random rnd, int len) {
+        String pool = POOLS[rnd.nextInt(POOLS.length)];
+        String alt = POOLS[rnd.nextInt(POOLS.length)];
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < len) {
+            String p = rnd.nextInt(4) == 0 ? alt : pool;
+            int i = rnd.nextInt(p.length());
+            if (Character.isHighSurrogate(p.charAt(i))) {
+                sb.append(p, i, i + 2);
+            } else if (Character.isLowSurrogate(p.charAt(i))) {
+                sb.append(p, i - 1, i + 1);
+            } else {
+                sb.append(p.charAt(i));
+            }
+        }
+        return sb.toString();
+    }
+
     private static void assertRoundTrip(String input) {
         byte[] compressed = LitheString.zip(input);
         String uncompressed = LitheString.unzip(compressed);
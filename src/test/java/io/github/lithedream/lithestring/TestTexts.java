@@ -0,0 +1,23 @@
+package io.github.lithedream.lithestring;
+
+import java.util.Random;
+
+/**
+ * Random texts of mixed-script words, shared by the collection tests
+ */
+final class TestTexts {
+
+    private static final String[] WORDS = { "alpha", "beta", "gamma", "delta", "\u00e8\u00e0",
+            "\u043f\u0440\u0438", "\u7684\u4e00", "\ud83d\ude00", " " };
+
+    private TestTexts() {
+    }
+
+    static String text(Random rnd, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.lithedream.lithestring.internal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class Type2EncoderTest {
+
+    private static final int[][] RANGES = { { 0x20, 0x7F }, { 0xA0, 0x180 }, { 0x370, 0x3FF }, { 0x400, 0x460 },
+            { 0x3040, 0x30FF }, { 0x4E00, 0x4F00 }, { 0x1F600, 0x1F650 } };
+
+    /**
+     * Small alphabets, wide alphabets, and 2-byte alphabets sharing a lead byte
+     * (which turn the buckets of the original HashMap into tree bins)
+     */
+    @Test
+    void sameBytesAsObjectEncoder() {
+        Random rnd = new Random(7);
+        for (int n = 0; n < 3000; n++) {
+            int[] main = RANGES[rnd.nextInt(RANGES.length)];
+            int[] other = RANGES[rnd.nextInt(RANGES.length)];
+            int alphabet = 1 + rnd.nextInt(200);
+            int len = 1 + rnd.nextInt(n % 50 == 0 ? 3000 : 200);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                int[] range = rnd.nextInt(5) == 0 ? other : main;
+                int span = Math.min(alphabet, range[1] - range[0]);
+                sb.appendCodePoint(range[0] + (rnd.nextBoolean() ? rnd.nextInt(span) : rnd.nextInt(1 + rnd.nextInt(span))));
+            }
+            byte[] utf8 = sb.toString().getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(Type2Algorithm.z2UTF8Objects(utf8), new Type2Encoder().encode(utf8), sb.toString());
+        }
+    }
+}
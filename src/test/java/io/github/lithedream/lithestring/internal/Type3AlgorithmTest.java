@@ -0,0 +1,48 @@
+package io.github.lithedream.lithestring.internal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class Type3AlgorithmTest {
+
+    /**
+     * The pooled deflater and the hand-written framing must give the same bytes
+     * as the GZIPOutputStream-based encoder they replaced, and decode both
+     * single and concatenated gzip members
+     */
+    @Test
+    void sameBytesAsGZIPOutputStream() throws IOException {
+        Random rnd = new Random(3);
+        for (int n = 0; n < 500; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = rnd.nextInt(n % 20 == 0 ? 100000 : 2000);
+            int alphabet = 1 + rnd.nextInt(n % 2 == 0 ? 30 : 0x800);
+            for (int i = 0; i < len; i++) {
+                sb.append((char) (32 + rnd.nextInt(alphabet)));
+            }
+            String s = sb.toString();
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(0b10111111);
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(expected), StandardCharsets.UTF_8)) {
+                writer.write(s);
+            }
+            byte[] zipped = Type3Algorithm.z3(s);
+            assertArrayEquals(expected.toByteArray(), zipped);
+            assertEquals(s, Type3Algorithm.unzip3(zipped, 0, zipped.length, Utf8Sink.STRING));
+
+            expected.write(zipped, 1, zipped.length - 1);
+            assertEquals(s + s, Type3Algorithm.unzip3(expected.toByteArray(), 0, expected.size(), Utf8Sink.STRING));
+        }
+    }
+}
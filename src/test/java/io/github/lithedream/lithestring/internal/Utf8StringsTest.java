@@ -0,0 +1,62 @@
+package io.github.lithedream.lithestring.internal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class Utf8StringsTest {
+
+    /**
+     * Whichever version of the class the JVM loaded, it must convert like the
+     * UTF-8 charset, ASCII runs of any length and alignment included
+     */
+    @Test
+    void sameAsTheCharset() {
+        Random rnd = new Random(7);
+        String[] others = { "\u00e9", "\u20ac", "\ud83d\ude00", "\ud800", "\udc00" };
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = rnd.nextInt(n % 10 == 0 ? 5000 : 40);
+            for (int i = 0; i < len; i++) {
+                sb.append(rnd.nextInt(20) == 0 ? others[rnd.nextInt(others.length)] : (char) rnd.nextInt(0x80));
+            }
+            String s = sb.toString();
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(utf8, Utf8Strings.utf8(s));
+
+            int offset = utf8.length == 0 ? 0 : rnd.nextInt(utf8.length);
+            int length = utf8.length - offset;
+            assertEquals(new String(utf8, offset, length, StandardCharsets.UTF_8),
+                    Utf8Strings.string(utf8, offset, length));
+            int ascii = 0;
+            while (ascii < length && utf8[offset + ascii] >= 0) {
+                ascii++;
+            }
+            assertEquals(ascii, Utf8Strings.asciiPrefix(utf8, offset, length));
+        }
+    }
+
+    /**
+     * When the tests run against the packaged jar on Java 9 or later, the JVM
+     * must load the class from META-INF/versions, which has the VarHandle scan
+     */
+    @Test
+    void packagedJarLoadsTheVersionedClass() throws ClassNotFoundException {
+        String location = Utf8Strings.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+        if (!location.endsWith(".jar") || System.getProperty("java.specification.version").startsWith("1.")) {
+            return;
+        }
+        Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+        boolean versioned = false;
+        for (Field field : Utf8Strings.class.getDeclaredFields()) {
+            versioned |= field.getType() == varHandle;
+        }
+        assertTrue(versioned, "base Utf8Strings loaded from " + location);
+    }
+}